@@ -0,0 +1,61 @@
+package com.litesuits.android.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务本身的分配：每次操作执行burst个空任务直到回调完成，用 -prof gc 运行，
+ * gc.alloc.rate.norm / burst 即每个任务分配的字节数（含任务对象本身）。
+ * <ul>
+ * <li>task：{@link AsyncTask#executeOnExecutor}到{@link AsyncTask#mCachedSerialExecutor}，结果经主线程回调；</li>
+ * <li>allowingLoss：{@link AsyncTask#executeAllowingLoss(Object[])}，多经过一层{@link AsyncTask#mLruSerialExecutor}；</li>
+ * <li>runnable：{@link AsyncTask#executeAllowingLoss(Runnable)}，只有并发控制器的包装。</li>
+ * </ul>
+ * burst 不超过{@link AsyncTask#mLruSerialExecutor}的最大排队数，不会有任务被挤出。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AllocationBenchmark {
+	@Param({"task", "allowingLoss", "runnable"})
+	public String path;
+	@Param({"32"})
+	public int burst;
+
+	@Setup(Level.Trial)
+	public void setUp() throws InterruptedException {
+		BenchSupport.awaitMainThread();
+	}
+
+	@Benchmark
+	public void executeBurst() throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(burst);
+		if ("task".equals(path)) {
+			for (int i = 0; i < burst; i++) {
+				new BenchSupport.SpinTask(0, done).executeOnExecutor(AsyncTask.mCachedSerialExecutor);
+			}
+		} else if ("allowingLoss".equals(path)) {
+			for (int i = 0; i < burst; i++) {
+				new BenchSupport.SpinTask(0, done).executeAllowingLoss();
+			}
+		} else if ("runnable".equals(path)) {
+			Runnable r = new Runnable() {
+				@Override
+				public void run() {
+					done.countDown();
+				}
+			};
+			for (int i = 0; i < burst; i++) {
+				AsyncTask.executeAllowingLoss(r);
+			}
+		} else {
+			throw new IllegalArgumentException("unknown path: " + path);
+		}
+		BenchSupport.await(done);
+	}
+}
@@ -0,0 +1,121 @@
+package com.litesuits.android.async;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试共用的工具：可选的执行器、模拟任务耗时、等待主线程。
+ */
+final class BenchSupport {
+	static final String CACHED = "cached";
+	static final String PRIORITY = "priority";
+	static final String WORK_STEALING = "workStealing";
+	static final String ADAPTIVE = "adaptive";
+
+	private BenchSupport() {}
+
+	static {
+		// 日志会淹没测量结果
+		Log.isPrint = false;
+	}
+
+	/**
+	 * @param kind    {@link #CACHED}、{@link #PRIORITY}、{@link #WORK_STEALING}或{@link #ADAPTIVE}
+	 * @param threads 并发线程数；{@link #CACHED}使用{@link AsyncTask#mCachedSerialExecutor}本身，忽略此参数
+	 */
+	static Executor newExecutor(String kind, int threads) {
+		if (CACHED.equals(kind)) return AsyncTask.mCachedSerialExecutor;
+		if (PRIORITY.equals(kind)) {
+			return new PriorityExecutor(threads, AsyncTask.mCachedSerialExecutor, 100, TimeUnit.MILLISECONDS);
+		}
+		if (WORK_STEALING.equals(kind)) return new WorkStealingExecutor(threads);
+		if (ADAPTIVE.equals(kind)) {
+			// CALLER_RUNS：突发超出容量时不丢任务，否则等待完成会一直阻塞
+			return new AdaptiveThreadPoolExecutor(threads, threads, 1024, AdaptiveThreadPoolExecutor.RejectPolicy.CALLER_RUNS);
+		}
+		throw new IllegalArgumentException("unknown executor: " + kind);
+	}
+
+	static void shutdown(Executor executor) {
+		if (executor == AsyncTask.mCachedSerialExecutor) return;
+		if (executor instanceof WorkStealingExecutor) ((WorkStealingExecutor) executor).shutdown();
+		else if (executor instanceof ExecutorService) ((ExecutorService) executor).shutdown();
+	}
+
+	/**
+	 * 忙等模拟cpu耗时的任务，0 立即返回
+	 */
+	static void spin(long nanos) {
+		if (nanos <= 0) return;
+		long end = System.nanoTime() + nanos;
+		while (System.nanoTime() < end) {
+			// busy wait
+		}
+	}
+
+	/**
+	 * 等待主线程处理完此前投递的消息
+	 */
+	static void awaitMainThread() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		AsyncTask.runOnMainThread(new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		});
+		if (!latch.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("main thread is stuck");
+	}
+
+	static void await(CountDownLatch latch) throws InterruptedException {
+		if (!latch.await(30, TimeUnit.SECONDS)) throw new IllegalStateException("tasks did not finish");
+	}
+
+	static File newTempDir(String prefix) {
+		File dir = new File(System.getProperty("java.io.tmpdir"), prefix + System.nanoTime());
+		if (!dir.mkdirs()) throw new IllegalStateException("cannot create " + dir);
+		return dir;
+	}
+
+	static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * 忙等指定时间后返回自身，结果投递到主线程后计数
+	 */
+	static class SpinTask extends SimpleTask<Object> {
+		private final long nanos;
+		private final CountDownLatch done;
+
+		SpinTask(long nanos, CountDownLatch done) {
+			this.nanos = nanos;
+			this.done = done;
+		}
+
+		@Override
+		protected Object doInBackground() {
+			spin(nanos);
+			return this;
+		}
+
+		@Override
+		protected void onPostExecute(Object result) {
+			done.countDown();
+		}
+
+		@Override
+		protected void onCancelled() {
+			done.countDown();
+		}
+	}
+}
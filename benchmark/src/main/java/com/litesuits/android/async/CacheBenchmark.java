@@ -0,0 +1,133 @@
+package com.litesuits.android.async;
+
+import android.content.Context;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存读写开销：存储引擎直接读写编码后的数据，以及经过{@link CachedTask}的完整读（命中）、写（过期后联网并写入）路径。
+ * <p>写入的条目字节数在每个试验开始时打印，对比compressThreshold可得压缩节省的空间与编解码多花的时间。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheBenchmark {
+	private static final int KEYS = 256;
+
+	@Param({"file", "segment"})
+	public String storage;
+	/**
+	 * 结果编码后的大致字节数
+	 */
+	@Param({"256", "16384"})
+	public int valueBytes;
+	/**
+	 * {@link CachedTask#setCompressThreshold(int)}，-1 不压缩
+	 */
+	@Param({"-1", "1024"})
+	public int compressThreshold;
+
+	private File dir;
+	private CacheStorage cacheStorage;
+	private Context context;
+	private ArrayList<String> value;
+	private byte[] encoded;
+	private String[] keys;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		dir = BenchSupport.newTempDir("cache-bench");
+		context = new Context(dir);
+		cacheStorage = "segment".equals(storage) ? new SegmentCacheStorage(new File(dir, "cachedtask")) : new FileCacheStorage(new File(dir, "cachedtask"));
+		CachedTask.setCacheStorage(cacheStorage);
+		CachedTask.setCompressThreshold(compressThreshold);
+		value = newValue(valueBytes);
+		keys = new String[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = "key_" + i;
+			// 经过CachedTask写入索引和缓存，读路径全部命中
+			new ValueTask(context, keys[i], 0, value).execute().get();
+		}
+		// 存储引擎的读写使用CachedTask实际写入的数据
+		encoded = cacheStorage.read(keys[0]);
+		System.out.println();
+		System.out.println("valueBytes " + valueBytes + ", compressThreshold " + compressThreshold + ": " + encoded.length + " bytes");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		CachedTask.cleanCacheFiles(context);
+		CachedTask.setCacheStorage(null);
+		CachedTask.setCompressThreshold(-1);
+		BenchSupport.deleteRecursively(dir);
+	}
+
+	static ArrayList<String> newValue(int bytes) {
+		ArrayList<String> list = new ArrayList<String>();
+		int size = 0;
+		for (int i = 0; size < bytes; i++) {
+			String item = "{\"id\":" + i + ",\"name\":\"item " + i + "\",\"tags\":[\"a\",\"b\"]}";
+			list.add(item);
+			size += item.length() + 3;
+		}
+		return list;
+	}
+
+	private String nextKey() {
+		String key = keys[next];
+		next = (next + 1) % KEYS;
+		return key;
+	}
+
+	@Benchmark
+	public void storageWrite() throws IOException {
+		cacheStorage.write(nextKey(), encoded);
+	}
+
+	@Benchmark
+	public byte[] storageRead() throws IOException {
+		return cacheStorage.read(nextKey());
+	}
+
+	/**
+	 * 缓存未过期：读存储并解码
+	 */
+	@Benchmark
+	public Object cachedTaskRead() throws Exception {
+		return read(nextKey());
+	}
+
+	/**
+	 * 缓存时间为0：每次都"联网"并编码、写入
+	 */
+	@Benchmark
+	public Object cachedTaskWrite() throws Exception {
+		return new ValueTask(context, nextKey(), 0, value).execute().get();
+	}
+
+	private Object read(String key) throws Exception {
+		return new ValueTask(context, key, Long.MAX_VALUE / 2, value).execute().get();
+	}
+
+	private static class ValueTask extends SimpleCachedTask<ArrayList<String>> {
+		private final ArrayList<String> value;
+
+		ValueTask(Context context, String key, long cacheMillis, ArrayList<String> value) {
+			super(context, key, cacheMillis, TimeUnit.MILLISECONDS);
+			this.value = value;
+		}
+
+		@Override
+		protected ArrayList<String> doConnectNetwork() {
+			return value;
+		}
+	}
+}
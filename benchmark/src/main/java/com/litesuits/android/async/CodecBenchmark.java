@@ -0,0 +1,119 @@
+package com.litesuits.android.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CompactCodec}与直接Java序列化的编解码耗时对比；编码后的字节数在每个试验开始时打印。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+	static final String COMPACT = "compact";
+	static final String JAVA = "java";
+
+	@Param({COMPACT, JAVA})
+	public String codec;
+	/**
+	 * strings：字符串列表；maps：字段表列表；pojos：{@link Serializable}小对象列表
+	 */
+	@Param({"strings", "maps", "pojos"})
+	public String shape;
+	@Param({"500"})
+	public int items;
+
+	private Object value;
+	private byte[] encoded;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		value = newValue(shape, items);
+		encoded = encode();
+		System.out.println();
+		System.out.println(codec + "/" + shape + "/" + items + ": " + encoded.length + " bytes");
+	}
+
+	static Object newValue(String shape, int items) {
+		ArrayList<Object> list = new ArrayList<Object>(items);
+		for (int i = 0; i < items; i++) {
+			if ("strings".equals(shape)) {
+				list.add("item " + i + " of the response");
+			} else if ("maps".equals(shape)) {
+				LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+				map.put("id", i);
+				map.put("name", "item " + i);
+				map.put("price", i * 0.5d);
+				map.put("available", (i & 1) == 0);
+				list.add(map);
+			} else if ("pojos".equals(shape)) {
+				list.add(new Item(i, "item " + i, i * 0.5d, (i & 1) == 0));
+			} else {
+				throw new IllegalArgumentException("unknown shape: " + shape);
+			}
+		}
+		return list;
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		if (COMPACT.equals(codec)) {
+			DataOutputStream out = new DataOutputStream(bos);
+			CompactCodec.INSTANCE.encode(value, out);
+			out.flush();
+		} else {
+			ObjectOutputStream out = new ObjectOutputStream(bos);
+			out.writeObject(value);
+			out.close();
+		}
+		return bos.toByteArray();
+	}
+
+	@Benchmark
+	public Object decode() throws Exception {
+		if (COMPACT.equals(codec)) {
+			return CompactCodec.INSTANCE.decode(new DataInputStream(new ByteArrayInputStream(encoded)));
+		}
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(encoded));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	static class Item implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final int id;
+		final String name;
+		final double price;
+		final boolean available;
+
+		Item(int id, String name, double price, boolean available) {
+			this.id = id;
+			this.name = name;
+			this.price = price;
+			this.available = available;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Item)) return false;
+			Item other = (Item) o;
+			return id == other.id && name.equals(other.name) && price == other.price && available == other.available;
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+	}
+}
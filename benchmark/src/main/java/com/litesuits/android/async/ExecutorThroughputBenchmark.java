@@ -0,0 +1,62 @@
+package com.litesuits.android.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 提交吞吐量：每次操作向执行器提交burst个任务并等待全部执行完，不经过主线程。
+ * 吞吐量单位是批次/秒，乘以burst即任务/秒。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorThroughputBenchmark {
+	@Param({BenchSupport.CACHED, BenchSupport.PRIORITY, BenchSupport.WORK_STEALING, BenchSupport.ADAPTIVE})
+	public String executor;
+	@Param({"4"})
+	public int threads;
+	/**
+	 * 每个任务的耗时（微秒）
+	 */
+	@Param({"0", "50"})
+	public int taskMicros;
+	@Param({"1", "100"})
+	public int burst;
+
+	private Executor exec;
+	private long taskNanos;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		exec = BenchSupport.newExecutor(executor, threads);
+		taskNanos = TimeUnit.MICROSECONDS.toNanos(taskMicros);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchSupport.shutdown(exec);
+	}
+
+	@Benchmark
+	public void submitBurst() throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(burst);
+		final long nanos = taskNanos;
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				BenchSupport.spin(nanos);
+				done.countDown();
+			}
+		};
+		for (int i = 0; i < burst; i++) {
+			exec.execute(task);
+		}
+		BenchSupport.await(done);
+	}
+}
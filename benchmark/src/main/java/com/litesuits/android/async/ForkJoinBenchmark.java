@@ -0,0 +1,93 @@
+package com.litesuits.android.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+/**
+ * 细粒度的拆分任务：一个任务在后台拆分出subtasks个子任务并等待全部完成，如解码一张图片的各个分块。
+ * <p>workStealing 在工作线程内{@link WorkStealingExecutor#fork(Callable)}，子任务进入本线程队列，等待期间帮忙执行；
+ * cached 是现在的做法，子任务提交给{@link AsyncTask#mCachedSerialExecutor}，再逐个{@link Future#get()}。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForkJoinBenchmark {
+	@Param({BenchSupport.CACHED, BenchSupport.WORK_STEALING})
+	public String executor;
+	@Param({"4"})
+	public int threads;
+	@Param({"16", "256"})
+	public int subtasks;
+	/**
+	 * 每个子任务的耗时（微秒）
+	 */
+	@Param({"1", "20"})
+	public int taskMicros;
+
+	private Executor exec;
+	private long taskNanos;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		exec = BenchSupport.newExecutor(executor, threads);
+		taskNanos = TimeUnit.MICROSECONDS.toNanos(taskMicros);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchSupport.shutdown(exec);
+	}
+
+	@Benchmark
+	public long splitAndJoin() throws Exception {
+		FutureTask<Long> root = new FutureTask<Long>(new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				ArrayList<Future<Long>> parts = new ArrayList<Future<Long>>(subtasks);
+				for (int i = 0; i < subtasks; i++) {
+					parts.add(fork(new Part(i, taskNanos)));
+				}
+				long sum = 0;
+				for (Future<Long> part : parts) {
+					sum += join(part);
+				}
+				return sum;
+			}
+		});
+		exec.execute(root);
+		return root.get(30, TimeUnit.SECONDS);
+	}
+
+	private Future<Long> fork(Callable<Long> callable) {
+		if (exec instanceof WorkStealingExecutor) return ((WorkStealingExecutor) exec).fork(callable);
+		FutureTask<Long> future = new FutureTask<Long>(callable);
+		exec.execute(future);
+		return future;
+	}
+
+	private long join(Future<Long> future) throws Exception {
+		if (exec instanceof WorkStealingExecutor) return ((WorkStealingExecutor) exec).join(future);
+		return future.get();
+	}
+
+	private static class Part implements Callable<Long> {
+		private final long index;
+		private final long nanos;
+
+		Part(long index, long nanos) {
+			this.index = index;
+			this.nanos = nanos;
+		}
+
+		@Override
+		public Long call() {
+			BenchSupport.spin(nanos);
+			return index;
+		}
+	}
+}
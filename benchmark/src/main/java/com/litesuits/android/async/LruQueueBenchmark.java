@@ -0,0 +1,101 @@
+package com.litesuits.android.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AsyncTask#mLruSerialExecutor}排队的竞争开销：每次操作入队一个任务（满时挤出最老的），再按LIFO取出一个，
+ * 与提交任务、任务结束后调度下一个一样。
+ * <p>lockFree 为现在的{@link ConcurrentLruQueue}；synchronized 与原来的SmartSerialExecutor一样，
+ * 在同一个锁上操作{@link ArrayDequeCompat}。用 -t 调整竞争的线程数。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LruQueueBenchmark {
+	static final String LOCK_FREE = "lockFree";
+	static final String SYNCHRONIZED = "synchronized";
+
+	@Param({LOCK_FREE, SYNCHRONIZED})
+	public String queue;
+	/**
+	 * 与四核设备上SmartSerialExecutor的最大排队数相同
+	 */
+	@Param({"112"})
+	public int capacity;
+
+	private LruQueue<Object> q;
+	private final Object element = new Object();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if (LOCK_FREE.equals(queue)) q = new LockFreeQueue<Object>(capacity);
+		else if (SYNCHRONIZED.equals(queue)) q = new SynchronizedQueue<Object>(capacity);
+		else throw new IllegalArgumentException("unknown queue: " + queue);
+		// 先放入一半，队列不空也不满
+		for (int i = 0; i < capacity / 2; i++) {
+			q.offerLast(element);
+		}
+	}
+
+	@Benchmark
+	public Object offerThenPoll() {
+		q.offerLast(element);
+		return q.pollLast();
+	}
+
+	interface LruQueue<E> {
+		E offerLast(E e);
+
+		E pollLast();
+	}
+
+	static class LockFreeQueue<E> implements LruQueue<E> {
+		private final ConcurrentLruQueue<E> queue;
+
+		LockFreeQueue(int capacity) {
+			queue = new ConcurrentLruQueue<E>(capacity);
+		}
+
+		@Override
+		public E offerLast(E e) {
+			return queue.offerLast(e);
+		}
+
+		@Override
+		public E pollLast() {
+			return queue.pollLast();
+		}
+	}
+
+	/**
+	 * 原SmartSerialExecutor的排队方式
+	 */
+	static class SynchronizedQueue<E> implements LruQueue<E> {
+		private final ArrayDequeCompat<E> queue;
+		private final int capacity;
+
+		SynchronizedQueue(int capacity) {
+			this.queue = new ArrayDequeCompat<E>(capacity);
+			this.capacity = capacity;
+		}
+
+		@Override
+		public synchronized E offerLast(E e) {
+			E old = null;
+			if (queue.size() >= capacity) old = queue.pollFirst();
+			queue.offerLast(e);
+			return old;
+		}
+
+		@Override
+		public synchronized E pollLast() {
+			return queue.pollLast();
+		}
+	}
+}
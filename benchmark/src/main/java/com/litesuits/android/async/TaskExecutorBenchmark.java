@@ -0,0 +1,59 @@
+package com.litesuits.android.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TaskExecutor.OrderedTaskExecutor}和{@link TaskExecutor.CyclicBarrierExecutor}的端到端耗时：
+ * burst个任务依次（或并发）执行完，直到结束回调在主线程执行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskExecutorBenchmark {
+	@Param({"0", "50"})
+	public int taskMicros;
+	@Param({"1", "16"})
+	public int burst;
+
+	private long taskNanos;
+
+	@Setup(Level.Trial)
+	public void setUp() throws InterruptedException {
+		taskNanos = TimeUnit.MICROSECONDS.toNanos(taskMicros);
+		BenchSupport.awaitMainThread();
+	}
+
+	@Benchmark
+	public void ordered() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(burst);
+		TaskExecutor.OrderedTaskExecutor executor = TaskExecutor.newOrderedExecutor();
+		for (int i = 0; i < burst; i++) {
+			executor.put(new BenchSupport.SpinTask(taskNanos, done));
+		}
+		executor.start();
+		BenchSupport.await(done);
+	}
+
+	@Benchmark
+	public void cyclicBarrier() throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(1);
+		TaskExecutor.CyclicBarrierExecutor executor = TaskExecutor.newCyclicBarrierExecutor();
+		CountDownLatch members = new CountDownLatch(burst);
+		for (int i = 0; i < burst; i++) {
+			executor.put(new BenchSupport.SpinTask(taskNanos, members));
+		}
+		executor.start(new Runnable() {
+			@Override
+			public void run() {
+				done.countDown();
+			}
+		});
+		BenchSupport.await(done);
+	}
+}
@@ -0,0 +1,57 @@
+package com.litesuits.android.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端延迟：从{@link AsyncTask#executeOnExecutor(Executor, Object[])}到{@link AsyncTask#onPostExecute(Object)}
+ * 在主线程执行完毕。SampleTime模式输出p50/p90/p99等分位数；burst=1时即单个任务的延迟，否则为一批任务全部完成的时间。
+ * <p>加上 -prof gc 可得到每个任务的分配字节数（gc.alloc.rate.norm / burst）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskLatencyBenchmark {
+	@Param({BenchSupport.CACHED, BenchSupport.PRIORITY, BenchSupport.WORK_STEALING})
+	public String executor;
+	@Param({"4"})
+	public int threads;
+	@Param({"0", "50"})
+	public int taskMicros;
+	@Param({"1", "100"})
+	public int burst;
+	@Param({"IMMEDIATE", "BATCH_PER_LOOP"})
+	public AsyncTask.DeliveryMode delivery;
+
+	private Executor exec;
+	private long taskNanos;
+
+	@Setup(Level.Trial)
+	public void setUp() throws InterruptedException {
+		exec = BenchSupport.newExecutor(executor, threads);
+		taskNanos = TimeUnit.MICROSECONDS.toNanos(taskMicros);
+		AsyncTask.setDeliveryMode(delivery);
+		BenchSupport.awaitMainThread();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		AsyncTask.setDeliveryMode(AsyncTask.DeliveryMode.IMMEDIATE);
+		BenchSupport.shutdown(exec);
+	}
+
+	@Benchmark
+	public void executeToPostExecute() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(burst);
+		for (int i = 0; i < burst; i++) {
+			new BenchSupport.SpinTask(taskNanos, done).executeOnExecutor(exec);
+		}
+		BenchSupport.await(done);
+	}
+}
@@ -0,0 +1,96 @@
+package com.litesuits.android.async;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * 大量定时任务在等待时的开销：先挂起pending个一小时后才到期的定时任务（如心跳、超时），再测量
+ * <ul>
+ * <li>scheduleCancel：添加并取消一个定时任务，如每次请求设置、撤销超时；</li>
+ * <li>fireBurst：添加burst个1毫秒后到期的任务并等待全部执行。时间轮在下一格才到期，耗时以一格的时间为主，
+ * 主要看它是否随pending增长。</li>
+ * </ul>
+ * wheel 为{@link TimerWheel}，scheduledPool 为单线程的{@link ScheduledThreadPoolExecutor}（二叉堆）。
+ * 原来的{@link java.util.Timer}每个定时任务一个线程，无法挂起上万个，不参与对比。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimerBenchmark {
+	static final String WHEEL = "wheel";
+	static final String SCHEDULED_POOL = "scheduledPool";
+
+	@Param({WHEEL, SCHEDULED_POOL})
+	public String timer;
+	@Param({"10000", "100000"})
+	public int pending;
+	@Param({"1000"})
+	public int burst;
+
+	private TimerWheel wheel;
+	private ScheduledThreadPoolExecutor pool;
+	private Object[] pendingHandles;
+
+	private static final Runnable NOOP = new Runnable() {
+		@Override
+		public void run() {}
+	};
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if (WHEEL.equals(timer)) {
+			wheel = new TimerWheel(TimerWheel.DEFAULT_TICK_MILLIS, TimerWheel.DEFAULT_WHEEL_SIZE);
+		} else if (SCHEDULED_POOL.equals(timer)) {
+			pool = new ScheduledThreadPoolExecutor(1);
+			pool.setRemoveOnCancelPolicy(true);
+		} else {
+			throw new IllegalArgumentException("unknown timer: " + timer);
+		}
+		pendingHandles = new Object[pending];
+		for (int i = 0; i < pending; i++) {
+			pendingHandles[i] = schedule(NOOP, TimeUnit.HOURS.toMillis(1) + i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		for (Object handle : pendingHandles) {
+			cancel(handle);
+		}
+		if (pool != null) pool.shutdownNow();
+	}
+
+	private Object schedule(Runnable run, long delayMillis) {
+		if (wheel != null) return wheel.schedule(run, delayMillis, TimeUnit.MILLISECONDS, TimerWheel.Dispatch.WORKER);
+		return pool.schedule(run, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private static void cancel(Object handle) {
+		if (handle instanceof TimerWheel.Handle) ((TimerWheel.Handle) handle).cancel();
+		else ((Future<?>) handle).cancel(false);
+	}
+
+	@Benchmark
+	public void scheduleCancel() {
+		cancel(schedule(NOOP, 30000));
+	}
+
+	@Benchmark
+	public void fireBurst() throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(burst);
+		Runnable count = new Runnable() {
+			@Override
+			public void run() {
+				done.countDown();
+			}
+		};
+		for (int i = 0; i < burst; i++) {
+			schedule(count, 1);
+		}
+		BenchSupport.await(done);
+	}
+}
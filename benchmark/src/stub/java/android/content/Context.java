@@ -0,0 +1,18 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * Only {@link #getFilesDir()} is used by the library.
+ */
+public class Context {
+	private final File filesDir;
+
+	public Context(File filesDir) {
+		this.filesDir = filesDir;
+	}
+
+	public File getFilesDir() {
+		return filesDir;
+	}
+}
@@ -0,0 +1,91 @@
+package android.os;
+
+/**
+ * JVM stand-in for {@code android.os.Handler}, backed by the {@link Looper} stand-in.
+ */
+public class Handler {
+	private final Looper looper;
+
+	public Handler() {
+		this(Looper.myLooper() != null ? Looper.myLooper() : Looper.getMainLooper());
+	}
+
+	public Handler(Looper looper) {
+		this.looper = looper;
+	}
+
+	public void handleMessage(Message msg) {}
+
+	public void dispatchMessage(Message msg) {
+		if (msg.callback != null) msg.callback.run();
+		else handleMessage(msg);
+	}
+
+	public final Looper getLooper() {
+		return looper;
+	}
+
+	public final Message obtainMessage(int what) {
+		return obtainMessage(what, null);
+	}
+
+	public final Message obtainMessage(int what, Object obj) {
+		Message msg = new Message();
+		msg.what = what;
+		msg.obj = obj;
+		msg.target = this;
+		return msg;
+	}
+
+	public final boolean post(Runnable r) {
+		return postDelayed(r, 0);
+	}
+
+	public final boolean postDelayed(Runnable r, long delayMillis) {
+		return postAtTime(r, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+	}
+
+	public final boolean postAtTime(Runnable r, long uptimeMillis) {
+		Message msg = obtainMessage(0);
+		msg.callback = r;
+		return sendMessageAtTime(msg, uptimeMillis);
+	}
+
+	public final void removeCallbacks(Runnable r) {
+		looper.remove(this, 0, r);
+	}
+
+	public final void removeMessages(int what) {
+		looper.remove(this, what, null);
+	}
+
+	public final boolean hasMessages(int what) {
+		return looper.has(this, what);
+	}
+
+	public final boolean sendMessage(Message msg) {
+		return sendMessageDelayed(msg, 0);
+	}
+
+	public final boolean sendMessageDelayed(Message msg, long delayMillis) {
+		return sendMessageAtTime(msg, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+	}
+
+	public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+		msg.target = this;
+		looper.enqueue(msg, uptimeMillis);
+		return true;
+	}
+
+	public final boolean sendEmptyMessage(int what) {
+		return sendMessage(obtainMessage(what));
+	}
+
+	public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+		return sendMessageDelayed(obtainMessage(what), delayMillis);
+	}
+
+	public final boolean sendEmptyMessageAtTime(int what, long uptimeMillis) {
+		return sendMessageAtTime(obtainMessage(what), uptimeMillis);
+	}
+}
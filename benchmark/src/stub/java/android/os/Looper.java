@@ -0,0 +1,88 @@
+package android.os;
+
+import java.util.PriorityQueue;
+
+/**
+ * JVM stand-in for the Android main looper: one daemon thread draining a time-ordered message queue.
+ */
+public final class Looper {
+	private static final Looper sMain = new Looper();
+
+	private final PriorityQueue<Message> queue = new PriorityQueue<Message>();
+	private long sequence;
+	private final Thread thread;
+
+	private Looper() {
+		thread = new Thread("main") {
+			@Override
+			public void run() {
+				loop();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public static Looper getMainLooper() {
+		return sMain;
+	}
+
+	public static Looper myLooper() {
+		return Thread.currentThread() == sMain.thread ? sMain : null;
+	}
+
+	public Thread getThread() {
+		return thread;
+	}
+
+	synchronized void enqueue(Message msg, long when) {
+		msg.when = when;
+		msg.seq = sequence++;
+		queue.add(msg);
+		notifyAll();
+	}
+
+	synchronized void remove(Handler target, int what, Runnable callback) {
+		java.util.Iterator<Message> it = queue.iterator();
+		while (it.hasNext()) {
+			Message msg = it.next();
+			if (msg.target != target) continue;
+			if (callback != null ? msg.callback == callback : (msg.callback == null && msg.what == what)) it.remove();
+		}
+	}
+
+	synchronized boolean has(Handler target, int what) {
+		for (Message msg : queue) {
+			if (msg.target == target && msg.callback == null && msg.what == what) return true;
+		}
+		return false;
+	}
+
+	private Message next() throws InterruptedException {
+		synchronized (this) {
+			while (true) {
+				Message head = queue.peek();
+				long now = SystemClock.uptimeMillis();
+				if (head != null && head.when <= now) return queue.poll();
+				if (head == null) wait();
+				else wait(head.when - now);
+			}
+		}
+	}
+
+	private void loop() {
+		while (true) {
+			Message msg;
+			try {
+				msg = next();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				msg.target.dispatchMessage(msg);
+			} catch (Throwable t) {
+				t.printStackTrace();
+			}
+		}
+	}
+}
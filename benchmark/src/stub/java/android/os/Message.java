@@ -0,0 +1,22 @@
+package android.os;
+
+public final class Message implements Comparable<Message> {
+	public int what;
+	public int arg1;
+	public int arg2;
+	public Object obj;
+	Handler target;
+	Runnable callback;
+	long when;
+	long seq;
+
+	public void sendToTarget() {
+		target.sendMessage(this);
+	}
+
+	@Override
+	public int compareTo(Message other) {
+		if (when != other.when) return when < other.when ? -1 : 1;
+		return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+	}
+}
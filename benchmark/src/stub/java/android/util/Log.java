@@ -0,0 +1,18 @@
+package android.util;
+
+/**
+ * Discards all output; benchmarks and tests run with the library's logging disabled anyway.
+ */
+public final class Log {
+	public static int v(String tag, String msg) { return 0; }
+	public static int v(String tag, String msg, Throwable tr) { return 0; }
+	public static int d(String tag, String msg) { return 0; }
+	public static int d(String tag, String msg, Throwable tr) { return 0; }
+	public static int i(String tag, String msg) { return 0; }
+	public static int i(String tag, String msg, Throwable tr) { return 0; }
+	public static int w(String tag, String msg) { return 0; }
+	public static int w(String tag, String msg, Throwable tr) { return 0; }
+	public static int w(String tag, Throwable tr) { return 0; }
+	public static int e(String tag, String msg) { return 0; }
+	public static int e(String tag, String msg, Throwable tr) { return 0; }
+}
@@ -0,0 +1,6 @@
+package android.widget;
+
+/**
+ * Referenced from javadoc only.
+ */
+public class ListView {}
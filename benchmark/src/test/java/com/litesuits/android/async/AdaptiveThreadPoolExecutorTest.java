@@ -0,0 +1,38 @@
+package com.litesuits.android.async;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveThreadPoolExecutorTest {
+
+	/**
+	 * 增加过的核心线程数在线程池空闲后回到下限，不依赖之后再有任务出队
+	 */
+	@Test
+	public void shrinksCoreSizeWhenIdle() throws Exception {
+		AdaptiveThreadPoolExecutor executor = new AdaptiveThreadPoolExecutor(1, 4, 16,
+				AdaptiveThreadPoolExecutor.RejectPolicy.ABORT);
+		try {
+			executor.setCorePoolSize(3);
+			final CountDownLatch ran = new CountDownLatch(1);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					ran.countDown();
+				}
+			});
+			assertTrue(ran.await(5, TimeUnit.SECONDS));
+			long deadline = System.currentTimeMillis() + 5000;
+			while (executor.getCorePoolSize() != 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, executor.getCorePoolSize());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.litesuits.android.async;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactCodecTest {
+
+	private static byte[] encode(Object value) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		CompactCodec.INSTANCE.encode(value, out);
+		out.flush();
+		return bos.toByteArray();
+	}
+
+	private static Object decode(byte[] data) throws IOException {
+		return CompactCodec.INSTANCE.decode(new DataInputStream(new ByteArrayInputStream(data)));
+	}
+
+	private static byte[] javaSerialize(Object value) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bos);
+		out.writeObject(value);
+		out.close();
+		return bos.toByteArray();
+	}
+
+	/**
+	 * 需要Java序列化的元素共享一次序列化，体积只比直接Java序列化多类型标记和长度
+	 */
+	@Test
+	public void serializableElementsShareOneStream() throws IOException {
+		Object value = CodecBenchmark.newValue("pojos", 500);
+		byte[] compact = encode(value);
+		assertEquals(javaSerialize(value).length + 5, compact.length);
+		assertEquals(value, decode(compact));
+	}
+
+	@Test
+	public void builtinShapesStayCompact() throws IOException {
+		Object value = CodecBenchmark.newValue("maps", 500);
+		byte[] compact = encode(value);
+		assertTrue(compact.length < javaSerialize(value).length);
+		assertEquals(value, decode(compact));
+	}
+
+	@Test
+	public void mixedListRoundTrips() throws IOException {
+		ArrayList<Object> list = new ArrayList<Object>();
+		list.add("text");
+		list.add(42);
+		list.add(new CodecBenchmark.Item(1, "one", 1.5, true));
+		list.add(null);
+		assertEquals(list, decode(encode(list)));
+	}
+
+	@Test
+	public void selfContainingListFallsBackToJavaSerialization() throws IOException {
+		ArrayList<Object> list = new ArrayList<Object>();
+		list.add("a");
+		list.add(list);
+		List<?> decoded = (List<?>) decode(encode(list));
+		assertEquals("a", decoded.get(0));
+		assertSame(decoded, decoded.get(1));
+	}
+
+	/**
+	 * 之前的版本对每个元素单独Java序列化，这样写入的缓存仍能读取
+	 */
+	@Test
+	public void decodesPerElementSerializableEntries() throws IOException {
+		CodecBenchmark.Item item = new CodecBenchmark.Item(7, "seven", 3.5, false);
+		byte[] serialized = javaSerialize(item);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		out.writeByte(11);
+		out.writeInt(2);
+		out.write(encode("first"));
+		out.writeByte(13);
+		out.writeInt(serialized.length);
+		out.write(serialized);
+		out.flush();
+		assertEquals(Arrays.asList("first", item), decode(bos.toByteArray()));
+	}
+}
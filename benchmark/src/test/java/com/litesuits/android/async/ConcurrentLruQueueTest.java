@@ -0,0 +1,150 @@
+package com.litesuits.android.async;
+
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLruQueueTest {
+
+	@Test
+	public void evictsOnlyWhenFull() {
+		ConcurrentLruQueue<String> queue = new ConcurrentLruQueue<String>(3);
+		assertNull(queue.offerLast("A"));
+		assertNull(queue.offerLast("B"));
+		assertNull(queue.offerLast("C"));
+		assertEquals("C", queue.pollLast());
+		assertEquals("B", queue.pollLast());
+		// 只剩A，不应被挤出
+		assertNull(queue.offerLast("D"));
+		assertNull(queue.offerLast("E"));
+		assertEquals(3, queue.size());
+		assertEquals("A", queue.offerLast("F"));
+		assertEquals("D", queue.pollFirst());
+		assertEquals("F", queue.pollLast());
+		assertEquals("E", queue.pollLast());
+		assertNull(queue.pollLast());
+		assertNull(queue.pollFirst());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void keepsOrderAcrossWrapAround() {
+		ConcurrentLruQueue<Integer> queue = new ConcurrentLruQueue<Integer>(5);
+		int next = 0;
+		for (int round = 0; round < 100; round++) {
+			assertNull(queue.offerLast(next++));
+			assertNull(queue.offerLast(next++));
+			assertNull(queue.offerLast(next++));
+			assertEquals(Integer.valueOf(next - 3), queue.pollFirst());
+			assertEquals(Integer.valueOf(next - 1), queue.pollLast());
+			assertEquals(Integer.valueOf(next - 2), queue.pollFirst());
+		}
+		for (int i = 0; i < 5; i++) {
+			assertNull(queue.offerLast(next + i));
+		}
+		for (int i = 5; i < 12; i++) {
+			assertEquals(Integer.valueOf(next + i - 5), queue.offerLast(next + i));
+		}
+		assertEquals(5, queue.size());
+	}
+
+	/**
+	 * 并发提交、取出和挤出后，每个元素恰好出现一次
+	 */
+	@Test
+	public void concurrentOperationsLoseNothing() throws Exception {
+		final ConcurrentLruQueue<Integer> queue = new ConcurrentLruQueue<Integer>(8);
+		final ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<Integer, Boolean>();
+		final AtomicInteger duplicates = new AtomicInteger();
+		final int threads = 4;
+		final int perThread = 100000;
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int base = t * perThread;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < perThread; i++) {
+						Integer evicted = queue.offerLast(base + i);
+						if (evicted != null && seen.put(evicted, Boolean.TRUE) != null) duplicates.incrementAndGet();
+						Integer polled = (i & 1) == 0 ? queue.pollLast() : (i % 3 == 0 ? queue.pollFirst() : null);
+						if (polled != null && seen.put(polled, Boolean.TRUE) != null) duplicates.incrementAndGet();
+					}
+				}
+			};
+			workers[t].start();
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		Integer e;
+		while ((e = queue.pollFirst()) != null) {
+			if (seen.put(e, Boolean.TRUE) != null) duplicates.incrementAndGet();
+		}
+		assertEquals(0, duplicates.get());
+		assertEquals(threads * perThread, seen.size());
+		assertEquals(0, queue.size());
+	}
+
+	/**
+	 * 提交线程满时挤出队头，取出线程从队尾取：一个槽位上会同时有前后两圈的操作，不能取走别的位置的元素而互相等死
+	 */
+	@Test
+	public void separateProducersAndConsumersMakeProgress() throws Exception {
+		final ConcurrentLruQueue<Integer> queue = new ConcurrentLruQueue<Integer>(2);
+		final ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<Integer, Boolean>();
+		final AtomicInteger duplicates = new AtomicInteger();
+		final int perThread = 200000;
+		final CountDownLatch producersDone = new CountDownLatch(2);
+		Thread[] workers = new Thread[4];
+		for (int t = 0; t < 2; t++) {
+			final int base = t * perThread;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						Integer evicted = queue.offerLast(base + i);
+						if (evicted != null && seen.put(evicted, Boolean.TRUE) != null) duplicates.incrementAndGet();
+					}
+					producersDone.countDown();
+				}
+			};
+		}
+		for (int t = 2; t < 4; t++) {
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					while (producersDone.getCount() > 0) {
+						Integer polled = queue.pollLast();
+						if (polled != null && seen.put(polled, Boolean.TRUE) != null) duplicates.incrementAndGet();
+					}
+				}
+			};
+		}
+		for (Thread worker : workers) {
+			worker.setDaemon(true);
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join(30000);
+			assertFalse("queue is stuck", worker.isAlive());
+		}
+		Integer e;
+		while ((e = queue.pollFirst()) != null) {
+			if (seen.put(e, Boolean.TRUE) != null) duplicates.incrementAndGet();
+		}
+		assertEquals(0, duplicates.get());
+		assertEquals(2 * perThread, seen.size());
+	}
+}
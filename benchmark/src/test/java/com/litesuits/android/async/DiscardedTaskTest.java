@@ -0,0 +1,91 @@
+package com.litesuits.android.async;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 被执行器丢弃的任务回调{@link AsyncTask#onCancelled()}，不回调{@link AsyncTask#onPostExecute(Object)}
+ */
+public class DiscardedTaskTest {
+
+	@Test
+	public void adaptiveDiscardCallsOnCancelled() throws Exception {
+		AdaptiveThreadPoolExecutor executor = new AdaptiveThreadPoolExecutor(1, 1, 1, AdaptiveThreadPoolExecutor.RejectPolicy.DISCARD);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			BlockingTask running = new BlockingTask(release);
+			running.executeOnExecutor(executor);
+			assertTrue(running.started.await(5, TimeUnit.SECONDS));
+			BlockingTask queued = new BlockingTask(release);
+			queued.executeOnExecutor(executor);
+			BlockingTask discarded = new BlockingTask(release);
+			discarded.executeOnExecutor(executor);
+
+			assertTrue(discarded.isCancelled());
+			assertTrue(discarded.finished.await(5, TimeUnit.SECONDS));
+			assertTrue(discarded.cancelled);
+			assertFalse(discarded.posted);
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void rateLimitedShedCallsOnCancelled() throws Exception {
+		RateLimitedExecutor executor = new RateLimitedExecutor(RateLimitedExecutor.Limit.tokenBucket(1, 1), 0);
+		CountDownLatch release = new CountDownLatch(1);
+		release.countDown();
+		BlockingTask first = new BlockingTask(release);
+		first.executeOnExecutor(executor);
+		BlockingTask shed = new BlockingTask(release);
+		shed.executeOnExecutor(executor);
+
+		assertEquals(1, executor.getShedCount());
+		assertTrue(shed.isCancelled());
+		assertTrue(shed.finished.await(5, TimeUnit.SECONDS));
+		assertTrue(shed.cancelled);
+		assertFalse(shed.posted);
+		assertTrue(first.finished.await(5, TimeUnit.SECONDS));
+		assertTrue(first.posted);
+	}
+
+	static class BlockingTask extends SimpleTask<String> {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+		private final CountDownLatch release;
+		volatile boolean posted;
+		volatile boolean cancelled;
+
+		BlockingTask(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		protected String doInBackground() {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "done";
+		}
+
+		@Override
+		protected void onPostExecute(String s) {
+			posted = true;
+			finished.countDown();
+		}
+
+		@Override
+		protected void onCancelled() {
+			cancelled = true;
+			finished.countDown();
+		}
+	}
+}
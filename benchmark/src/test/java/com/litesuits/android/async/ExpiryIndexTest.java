@@ -0,0 +1,143 @@
+package com.litesuits.android.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExpiryIndexTest {
+	private File dir;
+
+	@Before
+	public void setUp() {
+		dir = BenchSupport.newTempDir("index-test");
+	}
+
+	@After
+	public void tearDown() {
+		BenchSupport.deleteRecursively(dir);
+	}
+
+	private ExpiryIndex open() throws InterruptedException {
+		ExpiryIndex index = new ExpiryIndex(dir);
+		assertTrue(index.flush(5, TimeUnit.SECONDS));
+		return index;
+	}
+
+	private Object fileKey() throws Exception {
+		return Files.readAttributes(new File(dir, ExpiryIndex.FILE_NAME).toPath(), BasicFileAttributes.class).fileKey();
+	}
+
+	private static Set<Thread> indexThreads() {
+		Set<Thread> threads = new HashSet<Thread>();
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if ("CachedTask Index".equals(t.getName())) threads.add(t);
+		}
+		return threads;
+	}
+
+	/**
+	 * 索引线程常驻：写入完成后不退出，之后的修改由同一个线程写入
+	 */
+	@Test
+	public void reusesOneIndexThread() throws Exception {
+		Set<Thread> before = indexThreads();
+		ExpiryIndex index = open();
+		Set<Thread> created = indexThreads();
+		created.removeAll(before);
+		assertEquals(1, created.size());
+		for (int i = 0; i < 5; i++) {
+			index.put("key" + i, i);
+			if (i % 2 == 1) index.remove("key" + (i - 1));
+			assertTrue(index.flush(5, TimeUnit.SECONDS));
+			Set<Thread> now = indexThreads();
+			now.removeAll(before);
+			assertEquals(created, now);
+		}
+		assertEquals(Long.valueOf(4L), open().get("key4"));
+		assertNull(open().get("key0"));
+	}
+
+	/**
+	 * 与其他接口一样，unit 为null时按毫秒计
+	 */
+	@Test
+	public void flushTreatsNullUnitAsMillis() throws Exception {
+		ExpiryIndex index = open();
+		index.put("key", 1L);
+		assertTrue(index.flush(5000, null));
+		assertTrue(CachedTask.flushPendingWrites(5000, null));
+	}
+
+	/**
+	 * 非BMP字符的key不会让加载误判文件末尾不完整，从而每次都重写文件
+	 */
+	@Test
+	public void loadsModifiedUtf8KeysWithoutRewriting() throws Exception {
+		ExpiryIndex index = open();
+		index.put("img_😀", 100L);
+		index.put("nul_\u0000", 200L);
+		index.put("plain", 300L);
+		assertTrue(index.flush(5, TimeUnit.SECONDS));
+		Object before = fileKey();
+		long length = new File(dir, ExpiryIndex.FILE_NAME).length();
+
+		ExpiryIndex reloaded = open();
+		assertEquals(Long.valueOf(100L), reloaded.get("img_😀"));
+		assertEquals(Long.valueOf(200L), reloaded.get("nul_\u0000"));
+		assertEquals(Long.valueOf(300L), reloaded.get("plain"));
+		assertEquals(before, fileKey());
+		assertEquals(length, new File(dir, ExpiryIndex.FILE_NAME).length());
+	}
+
+	@Test
+	public void removeAndClearArePersistedInOrder() throws Exception {
+		ExpiryIndex index = open();
+		index.put("a", 1L);
+		index.put("b", 2L);
+		index.remove("a");
+		assertNull(index.get("a"));
+		assertTrue(index.flush(5, TimeUnit.SECONDS));
+		ExpiryIndex reloaded = open();
+		assertNull(reloaded.get("a"));
+		assertEquals(Long.valueOf(2L), reloaded.get("b"));
+
+		reloaded.clear();
+		reloaded.put("c", 3L);
+		assertNull(reloaded.get("b"));
+		assertTrue(reloaded.flush(5, TimeUnit.SECONDS));
+		ExpiryIndex afterClear = open();
+		assertNull(afterClear.get("b"));
+		assertEquals(Long.valueOf(3L), afterClear.get("c"));
+
+		afterClear.clear();
+		assertTrue(afterClear.flush(5, TimeUnit.SECONDS));
+		assertFalse(new File(dir, ExpiryIndex.FILE_NAME).exists());
+	}
+
+	/**
+	 * 加载完成前删除的key不会被文件中的旧记录恢复
+	 */
+	@Test
+	public void removeBeforeLoadWins() throws Exception {
+		ExpiryIndex index = open();
+		for (int i = 0; i < 1000; i++) {
+			index.put("k" + i, i);
+		}
+		assertTrue(index.flush(5, TimeUnit.SECONDS));
+		ExpiryIndex reloaded = new ExpiryIndex(dir);
+		reloaded.remove("k999");
+		assertNull(reloaded.get("k999"));
+		assertEquals(Long.valueOf(998L), reloaded.get("k998"));
+		assertTrue(reloaded.flush(5, TimeUnit.SECONDS));
+		assertNull(open().get("k999"));
+	}
+}
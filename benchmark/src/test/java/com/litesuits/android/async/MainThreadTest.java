@@ -0,0 +1,68 @@
+package com.litesuits.android.async;
+
+import android.os.Looper;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 替身主线程：任务的回调都在{@link Looper#getMainLooper()}的线程执行
+ */
+public class MainThreadTest {
+
+	@Test
+	public void postExecuteRunsOnMainThread() throws Exception {
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+		final AtomicReference<String> result = new AtomicReference<String>();
+		new SimpleTask<String>() {
+			@Override
+			protected String doInBackground() {
+				return "done";
+			}
+
+			@Override
+			protected void onPostExecute(String s) {
+				thread.set(Thread.currentThread());
+				result.set(s);
+				done.countDown();
+			}
+		}.execute();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertSame(Looper.getMainLooper().getThread(), thread.get());
+		assertEquals("done", result.get());
+	}
+
+	@Test
+	public void delayedMessagesRunInOrder() throws Exception {
+		final StringBuffer order = new StringBuffer();
+		final CountDownLatch done = new CountDownLatch(3);
+		AsyncTask.runOnMainThreadDelayed(new Runnable() {
+			@Override
+			public void run() {
+				order.append('c');
+				done.countDown();
+			}
+		}, 60);
+		AsyncTask.runOnMainThreadDelayed(new Runnable() {
+			@Override
+			public void run() {
+				order.append('b');
+				done.countDown();
+			}
+		}, 30);
+		AsyncTask.runOnMainThread(new Runnable() {
+			@Override
+			public void run() {
+				order.append('a');
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals("abc", order.toString());
+	}
+}
@@ -0,0 +1,121 @@
+package com.litesuits.android.async;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ParallelMapTest {
+
+	static class Recorder<R> extends TaskExecutor.MapCallback<R> {
+		final CountDownLatch finished = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		volatile List<R> results;
+		volatile Exception error;
+
+		@Override
+		protected void onFinished(List<R> results, Exception e) {
+			this.results = results;
+			this.error = e;
+			calls.incrementAndGet();
+			finished.countDown();
+		}
+
+		void await() throws InterruptedException {
+			assertTrue(finished.await(5, TimeUnit.SECONDS));
+			// 确认没有第二次回调
+			BenchSupport.awaitMainThread();
+			assertEquals(1, calls.get());
+		}
+	}
+
+	@Test
+	public void mapsInOrder() throws Exception {
+		List<Integer> items = new ArrayList<Integer>();
+		for (int i = 0; i < 1000; i++) {
+			items.add(i);
+		}
+		Recorder<Integer> recorder = new Recorder<Integer>();
+		TaskExecutor.parallelMap(items, new TaskExecutor.Mapper<Integer, Integer>() {
+			@Override
+			public Integer map(Integer item) {
+				return item * 2;
+			}
+		}, recorder);
+		recorder.await();
+		assertNull(recorder.error);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(Integer.valueOf(i * 2), recorder.results.get(i));
+		}
+	}
+
+	/**
+	 * 后抛出的异常不会覆盖第一个
+	 */
+	@Test
+	public void reportsFirstException() throws Exception {
+		// 单核时只有一个worker，两个元素不会同时处理
+		Assume.assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+		final Exception first = new Exception("first");
+		final Exception second = new Exception("second");
+		final CountDownLatch secondStarted = new CountDownLatch(1);
+		final CountDownLatch firstThrown = new CountDownLatch(1);
+		Recorder<String> recorder = new Recorder<String>();
+		TaskExecutor.parallelMap(Arrays.asList("a", "b"), new TaskExecutor.Mapper<String, String>() {
+			@Override
+			public String map(String item) throws Exception {
+				if ("a".equals(item)) {
+					// 两个元素都已领取后再抛出
+					secondStarted.await(5, TimeUnit.SECONDS);
+					firstThrown.countDown();
+					throw first;
+				}
+				secondStarted.countDown();
+				firstThrown.await(5, TimeUnit.SECONDS);
+				Thread.sleep(50);
+				throw second;
+			}
+		}, recorder);
+		recorder.await();
+		assertSame(first, recorder.error);
+	}
+
+	/**
+	 * mapper抛出Error时依然回调结束，异常为包装了它的{@link ExecutionException}
+	 */
+	@Test
+	public void finishesWhenMapperThrowsError() throws Exception {
+		final AssertionError fatal = new AssertionError("fatal");
+		final AtomicReference<Thread.UncaughtExceptionHandler> previous = new AtomicReference<Thread.UncaughtExceptionHandler>(
+				Thread.getDefaultUncaughtExceptionHandler());
+		// worker线程随后抛出Error，不打印到测试输出
+		Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {}
+		});
+		try {
+			Recorder<String> recorder = new Recorder<String>();
+			TaskExecutor.parallelMap(Arrays.asList("a", "b", "c", "d"), new TaskExecutor.Mapper<String, String>() {
+				@Override
+				public String map(String item) {
+					if ("c".equals(item)) throw fatal;
+					return item;
+				}
+			}, recorder);
+			recorder.await();
+			assertTrue(recorder.error instanceof ExecutionException);
+			assertSame(fatal, recorder.error.getCause());
+		} finally {
+			Thread.setDefaultUncaughtExceptionHandler(previous.get());
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.litesuits.android.async;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PriorityExecutorTest {
+
+	/**
+	 * 线程池拒绝执行后名额要归还，后续任务仍能被调度，被拒的{@link java.util.concurrent.Future}被取消
+	 */
+	@Test
+	public void returnsPermitWhenRejected() {
+		final AtomicBoolean reject = new AtomicBoolean(true);
+		Executor direct = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				if (reject.getAndSet(false)) throw new RejectedExecutionException("full");
+				command.run();
+			}
+		};
+		PriorityExecutor executor = new PriorityExecutor(1, direct, 0, TimeUnit.MILLISECONDS);
+		FutureTask<Void> rejected = new FutureTask<Void>(new Runnable() {
+			@Override
+			public void run() {}
+		}, null);
+		try {
+			executor.execute(rejected);
+			fail("rejection should be rethrown");
+		} catch (RejectedExecutionException expected) {
+		}
+		assertTrue(rejected.isCancelled());
+
+		final AtomicInteger runs = new AtomicInteger();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				runs.incrementAndGet();
+			}
+		});
+		assertEquals(1, runs.get());
+	}
+}
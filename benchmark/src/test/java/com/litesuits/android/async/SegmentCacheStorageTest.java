@@ -0,0 +1,58 @@
+package com.litesuits.android.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class SegmentCacheStorageTest {
+	private File dir;
+
+	@Before
+	public void setUp() {
+		dir = BenchSupport.newTempDir("segment-test");
+	}
+
+	@After
+	public void tearDown() {
+		BenchSupport.deleteRecursively(dir);
+	}
+
+	/**
+	 * writeUTF写的是modified UTF-8：非BMP字符和NUL与标准UTF-8长度不同，重新加载后偏移仍要正确
+	 */
+	@Test
+	public void reloadsKeysWithModifiedUtf8Encoding() throws Exception {
+		SegmentCacheStorage storage = new SegmentCacheStorage(dir);
+		storage.write("img_😀", "hello".getBytes("UTF-8"));
+		storage.write("nul_\u0000", "nul".getBytes("UTF-8"));
+		storage.write("plain", "world".getBytes("UTF-8"));
+
+		SegmentCacheStorage reloaded = new SegmentCacheStorage(dir);
+		assertEquals("hello", new String(reloaded.read("img_😀"), "UTF-8"));
+		assertEquals("nul", new String(reloaded.read("nul_\u0000"), "UTF-8"));
+		assertEquals("world", new String(reloaded.read("plain"), "UTF-8"));
+		assertEquals(3, reloaded.entries().size());
+
+		// 没有被当作不完整的末尾截掉，之后的写入也能读回
+		reloaded.write("after", "reload".getBytes("UTF-8"));
+		SegmentCacheStorage again = new SegmentCacheStorage(dir);
+		assertEquals("world", new String(again.read("plain"), "UTF-8"));
+		assertEquals("reload", new String(again.read("after"), "UTF-8"));
+	}
+
+	@Test
+	public void reloadsRemovedKeysAsRemoved() throws Exception {
+		SegmentCacheStorage storage = new SegmentCacheStorage(dir);
+		storage.write("img_😀", "hello".getBytes("UTF-8"));
+		storage.write("plain", "world".getBytes("UTF-8"));
+		storage.remove("img_😀");
+
+		SegmentCacheStorage reloaded = new SegmentCacheStorage(dir);
+		assertNull(reloaded.read("img_😀"));
+		assertEquals("world", new String(reloaded.read("plain"), "UTF-8"));
+	}
+}
@@ -0,0 +1,55 @@
+package com.litesuits.android.async;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+	private static Runnable countDown(final CountDownLatch latch) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+	}
+
+	/**
+	 * 定时线程休眠到远处的到期时间时，新加入的更近的任务仍然按时执行；超出一圈的任务在对应的一圈执行
+	 */
+	@Test
+	public void nearTimerAddedWhileSleepingFiresOnTime() throws Exception {
+		TimerWheel wheel = new TimerWheel(1, 4);
+		CountDownLatch far = new CountDownLatch(1);
+		TimerWheel.Handle farHandle = wheel.schedule(countDown(far), 300, TimeUnit.MILLISECONDS, TimerWheel.Dispatch.WORKER);
+		Thread.sleep(20);
+		CountDownLatch near = new CountDownLatch(1);
+		long start = System.nanoTime();
+		wheel.schedule(countDown(near), 10, TimeUnit.MILLISECONDS, TimerWheel.Dispatch.WORKER);
+		assertTrue(near.await(150, TimeUnit.MILLISECONDS));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 10);
+		assertEquals(1, far.getCount());
+		assertTrue(far.await(2, TimeUnit.SECONDS));
+		assertTrue(farHandle.isDone());
+		assertEquals(0, wheel.getPendingCount());
+	}
+
+	/**
+	 * 取消的任务不执行，也不影响之后到期的任务
+	 */
+	@Test
+	public void cancelledTimerDoesNotFire() throws Exception {
+		TimerWheel wheel = new TimerWheel(1, 8);
+		CountDownLatch cancelled = new CountDownLatch(1);
+		TimerWheel.Handle handle = wheel.schedule(countDown(cancelled), 20, TimeUnit.MILLISECONDS, TimerWheel.Dispatch.WORKER);
+		CountDownLatch later = new CountDownLatch(3);
+		wheel.scheduleAtFixedRate(countDown(later), 30, 15, TimeUnit.MILLISECONDS, TimerWheel.Dispatch.WORKER);
+		assertTrue(handle.cancel());
+		assertTrue(later.await(2, TimeUnit.SECONDS));
+		assertEquals(1, cancelled.getCount());
+	}
+}
@@ -0,0 +1,196 @@
+package com.litesuits.android.async;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有界、自适应的线程池，可代替无上限的{@link AsyncTask#mCachedSerialExecutor}。
+ * <ul>
+ * <li>1. 线程总数有硬上限，排队队列有容量上限，瞬间大量并发时不会一个任务开一个线程。</li>
+ * <li>2. 队列满且线程数已达上限时，按{@link RejectPolicy}处理被拒绝的任务。</li>
+ * <li>3. 根据任务在队列中的平均等待时间动态调整核心线程数：等待过久则加线程，等待很短则减线程；
+ * 任务全部执行完、线程池空闲时核心线程数回到下限，多出的线程空闲{@link #KEEP_ALIVE}秒后退出。</li>
+ * </ul>
+ * 用法：{@link AsyncTask#setDefaultExecutor(Executor)}设为默认执行器，或者通过
+ * {@link AsyncTask#executeOnExecutor(Executor, Object[])}单独指定。
+ */
+public class AdaptiveThreadPoolExecutor extends ThreadPoolExecutor {
+	private static final String TAG = AdaptiveThreadPoolExecutor.class.getSimpleName();
+	private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+	private static final int DEFAULT_QUEUE_CAPACITY = 128;
+	private static final int KEEP_ALIVE = 10;
+	/**
+	 * 两次调整核心线程数之间的最小间隔
+	 */
+	private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+	/**
+	 * 队列满且线程数达到上限时，对新任务的处理策略
+	 */
+	public enum RejectPolicy {
+		/**
+		 * 抛出{@link RejectedExecutionException}
+		 */
+		ABORT,
+		/**
+		 * 在提交任务的线程直接执行（注意：主线程提交时会在主线程执行）
+		 */
+		CALLER_RUNS,
+		/**
+		 * 丢弃新任务
+		 */
+		DISCARD,
+		/**
+		 * 丢弃队列中最老的任务，再尝试提交新任务
+		 */
+		DISCARD_OLDEST;
+	}
+
+	private final int minCoreSize;
+	private final AtomicLong lastAdjustTime = new AtomicLong();
+	/**
+	 * 排队等待时间的指数滑动平均值（纳秒）
+	 */
+	private volatile long avgWaitNanos;
+	private volatile long growThresholdNanos = TimeUnit.MILLISECONDS.toNanos(20);
+	private volatile long shrinkThresholdNanos = TimeUnit.MILLISECONDS.toNanos(2);
+
+	/**
+	 * 核心线程数为cpu个数，线程上限为 cpu*2+1，队列容量为{@link #DEFAULT_QUEUE_CAPACITY}，
+	 * 过载时丢弃最老的任务。
+	 */
+	public AdaptiveThreadPoolExecutor() {
+		this(CPU_COUNT, CPU_COUNT * 2 + 1, DEFAULT_QUEUE_CAPACITY, RejectPolicy.DISCARD_OLDEST);
+	}
+
+	/**
+	 * @param minCoreSize   核心线程数下限，也是初始核心线程数
+	 * @param maxPoolSize   线程总数硬上限
+	 * @param queueCapacity 排队队列容量
+	 * @param policy        过载时的拒绝策略
+	 */
+	public AdaptiveThreadPoolExecutor(int minCoreSize, int maxPoolSize, int queueCapacity, RejectPolicy policy) {
+		super(minCoreSize, maxPoolSize, KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueCapacity),
+				new ThreadFactory() {
+					private final AtomicInteger mCount = new AtomicInteger(1);
+
+					public Thread newThread(Runnable r) {
+						return new Thread(r, "AsyncTask Adaptive #" + mCount.getAndIncrement());
+					}
+				}, newRejectedHandler(policy));
+		this.minCoreSize = minCoreSize;
+	}
+
+	/**
+	 * 设置自适应阈值：平均排队时间超过grow则增加核心线程，低于shrink则减少核心线程。
+	 *
+	 * @param grow   增加线程的阈值
+	 * @param shrink 减少线程的阈值
+	 * @param unit   if timeunit is null, see time as millisecond.
+	 */
+	public void setWaitThresholds(long grow, long shrink, TimeUnit unit) {
+		if (unit == null) unit = TimeUnit.MILLISECONDS;
+		growThresholdNanos = unit.toNanos(grow);
+		shrinkThresholdNanos = unit.toNanos(shrink);
+	}
+
+	/**
+	 * @return 排队等待时间的滑动平均值（毫秒）
+	 */
+	public long getAverageQueueWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(avgWaitNanos);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (command == null) throw new NullPointerException();
+		super.execute(new TimedRunnable(command, System.nanoTime()));
+	}
+
+	private void onDequeued(long waitNanos) {
+		long avg = avgWaitNanos;
+		// alpha = 1/8
+		avg += (waitNanos - avg) >> 3;
+		avgWaitNanos = avg;
+
+		long now = System.nanoTime();
+		long last = lastAdjustTime.get();
+		if (now - last < ADJUST_INTERVAL_NANOS || !lastAdjustTime.compareAndSet(last, now)) return;
+		int core = getCorePoolSize();
+		if (avg > growThresholdNanos && core < getMaximumPoolSize()) {
+			setCorePoolSize(core + 1);
+			if (Log.isPrint) Log.d(TAG, "queue wait " + (avg / 1000000) + "ms, core pool size grow to " + (core + 1));
+		} else if (avg < shrinkThresholdNanos && core > minCoreSize) {
+			setCorePoolSize(core - 1);
+			if (Log.isPrint) Log.d(TAG, "queue wait " + (avg / 1000000) + "ms, core pool size shrink to " + (core - 1));
+		}
+	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		super.afterExecute(r, t);
+		// 队列已空且只剩当前这个任务在执行：线程池即将空闲，不会再有出队来触发调整，在这里把核心线程数降回下限
+		if (getQueue().isEmpty() && getActiveCount() <= 1 && getCorePoolSize() > minCoreSize) {
+			avgWaitNanos = 0;
+			setCorePoolSize(minCoreSize);
+			if (Log.isPrint) Log.d(TAG, "pool idle, core pool size shrink to " + minCoreSize);
+		}
+	}
+
+	private static RejectedExecutionHandler newRejectedHandler(final RejectPolicy policy) {
+		return new RejectedExecutionHandler() {
+			@Override
+			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+				switch (policy) {
+					case ABORT :
+						throw new RejectedExecutionException("Task " + r + " rejected from " + executor);
+					case CALLER_RUNS :
+						if (!executor.isShutdown()) r.run();
+						break;
+					case DISCARD_OLDEST :
+						if (!executor.isShutdown()) {
+							discard(executor.getQueue().poll());
+							executor.execute(unwrap(r));
+						} else {
+							discard(r);
+						}
+						break;
+					case DISCARD :
+					default :
+						discard(r);
+						break;
+				}
+			}
+		};
+	}
+
+	private static Runnable unwrap(Runnable r) {
+		return r instanceof TimedRunnable ? ((TimedRunnable) r).command : r;
+	}
+
+	/**
+	 * 被丢弃的{@link AsyncTask}需要取消掉，才能回调{@link AsyncTask#onCancelled()}，而不是永远停在RUNNING状态
+	 */
+	private static void discard(Runnable r) {
+		r = unwrap(r);
+		if (r instanceof Future) ((Future<?>) r).cancel(false);
+		if (Log.isPrint) Log.w(TAG, "discard task: " + r);
+	}
+
+	private class TimedRunnable implements Runnable {
+		final Runnable command;
+		final long enqueueTime;
+
+		TimedRunnable(Runnable command, long enqueueTime) {
+			this.command = command;
+			this.enqueueTime = enqueueTime;
+		}
+
+		@Override
+		public void run() {
+			onDequeued(System.nanoTime() - enqueueTime);
+			command.run();
+		}
+	}
+}
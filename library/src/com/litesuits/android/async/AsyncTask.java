@@ -19,12 +19,14 @@ import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.os.Process;
+import android.os.SystemClock;
 import android.widget.ListView;
 
-import java.util.Stack;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * see {@link android.os.AsyncTask}
@@ -65,6 +67,8 @@ public abstract class AsyncTask<Params, Progress, Result> {
 	 * 这就使得任务总能得到执行，且高效执行少量（<={@link #CORE_POOL_SIZE}）异步任务。
 	 * 线程完成任务后保持{@link #KEEP_ALIVE}秒销毁，这段时间内可重用以应付短时间内较大量并发，提升性能。
 	 * 它实际控制并执行线程任务。
+	 * <p>需要限制线程总数时，可用{@link AdaptiveThreadPoolExecutor}替代，见{@link #setDefaultExecutor(Executor)}。
+	 * <p>CPU密集且粒度很小的任务，可用{@link WorkStealingExecutor}执行。
 	 */
 	public static final ThreadPoolExecutor mCachedSerialExecutor = new ThreadPoolExecutor(CORE_POOL_SIZE,
 			MAXIMUM_POOL_SIZE, KEEP_ALIVE, TimeUnit.SECONDS, sPoolWorkQueue, sThreadFactory);
@@ -85,9 +89,17 @@ public abstract class AsyncTask<Params, Progress, Result> {
 	 */
 	private static class SmartSerialExecutor implements Executor {
 		/**
-		 * 这里使用{@link ArrayDequeCompat}当栈比{@link Stack}性能高
+		 * 无锁的Lru队列，提交和调度都不再竞争同一把锁
 		 */
-		private ArrayDequeCompat<Runnable> mQueue = new ArrayDequeCompat<Runnable>(serialMaxCount);
+		private final ConcurrentLruQueue<SerialRunnable> mQueue;
+		/**
+		 * 复用任务包装对象，提交任务时不再分配新的{@link Runnable}
+		 */
+		private final ObjectPool<SerialRunnable> mWrapperPool = new ObjectPool<SerialRunnable>(32);
+		/**
+		 * 本执行器正在运行的任务数，用CAS控制，不再查询线程池（{@link ThreadPoolExecutor#getActiveCount()}需要加锁）
+		 */
+		private final AtomicInteger mRunning = new AtomicInteger();
 		private ScheduleStrategy mStrategy = ScheduleStrategy.LIFO;
 
 		private enum ScheduleStrategy {
@@ -130,52 +142,86 @@ public abstract class AsyncTask<Params, Progress, Result> {
 
 		public SmartSerialExecutor() {
 			reSettings(CPU_COUNT);
+			mQueue = new ConcurrentLruQueue<SerialRunnable>(serialMaxCount);
 		}
 
 		@Override
-		public synchronized void execute(final Runnable command) {
-			Runnable r = new Runnable() {
-				@Override
-				public void run() {
-					command.run();
-					next();
-				}
-			};
-			if (mCachedSerialExecutor.getActiveCount() < serialOneTime) {
+		public void execute(final Runnable command) {
+			SerialRunnable r = mWrapperPool.acquire();
+			if (r == null) r = new SerialRunnable();
+			r.command = command;
+			if (tryAcquire()) {
 				// 小于单次并发量直接运行
 				mCachedSerialExecutor.execute(r);
 			} else {
-				// 如果大于并发上限，那么移除最老的任务
-				if (mQueue.size() >= serialMaxCount) {
-					mQueue.pollFirst();
+				// 新任务放在队尾，如果超出上限，最老的任务被挤出
+				SerialRunnable dropped = mQueue.offerLast(r);
+				if (dropped != null) {
+					if (TaskMetrics.isEnabled()) TaskMetrics.onDropped();
+					recycle(dropped);
 				}
-				// 新任务放在队尾
-				mQueue.offerLast(r);
-
-				// 动态获取目前cpu处理器数目,并调整设置。
-				// int proCount = Runtime.getRuntime().availableProcessors();
-				// if (proCount != cpuCount) {
-				// cpuCount = proCount;
-				// reSettings(proCount);
-				// }
+				// 入队后再检查一次：避免入队期间运行中的任务恰好全部结束，导致队列无人调度
+				next();
 			}
+		}
 
+		public void next() {
+			while (mQueue.size() > 0 && tryAcquire()) {
+				SerialRunnable mActive;
+				switch (mStrategy) {
+					case LIFO :
+						mActive = mQueue.pollLast();
+						break;
+					case FIFO :
+						mActive = mQueue.pollFirst();
+						break;
+					default :
+						mActive = mQueue.pollLast();
+						break;
+				}
+				if (mActive != null) {
+					mCachedSerialExecutor.execute(mActive);
+					return;
+				}
+				// 任务已被其他线程取走，归还名额
+				mRunning.decrementAndGet();
+			}
 		}
 
-		public synchronized void next() {
-			Runnable mActive;
-			switch (mStrategy) {
-				case LIFO :
-					mActive = mQueue.pollLast();
-					break;
-				case FIFO :
-					mActive = mQueue.pollFirst();
-					break;
-				default :
-					mActive = mQueue.pollLast();
-					break;
+		private void recycle(SerialRunnable r) {
+			r.command = null;
+			mWrapperPool.release(r);
+		}
+
+		private final class SerialRunnable implements Runnable {
+			Runnable command;
+
+			@Override
+			public void run() {
+				Runnable c = command;
+				try {
+					c.run();
+				} finally {
+					recycle(this);
+					mRunning.decrementAndGet();
+					next();
+				}
+			}
+		}
+
+		int getQueueSize() {
+			return mQueue.size();
+		}
+
+		/**
+		 * CAS占用一个并发名额，已达{@link #serialOneTime}时返回false
+		 */
+		private boolean tryAcquire() {
+			for (;;) {
+				int running = mRunning.get();
+				if (running >= serialOneTime) return false;
+				if (mRunning.compareAndSet(running, running + 1)) return true;
 			}
-			if (mActive != null) mCachedSerialExecutor.execute(mActive);
 		}
 	}
 
@@ -183,6 +229,35 @@ public abstract class AsyncTask<Params, Progress, Result> {
 
 	private static final int MESSAGE_POST_RESULT = 0x1;
 	private static final int MESSAGE_POST_PROGRESS = 0x2;
+	private static final int MESSAGE_POST_BATCH = 0x3;
+	private static final int MESSAGE_POST_LATEST_PROGRESS = 0x4;
+	private static final long FRAME_INTERVAL_MILLIS = 16;
+
+	/**
+	 * 结果（及进度）投递到主线程的方式
+	 */
+	public enum DeliveryMode {
+		/**
+		 * 每个结果单独发送一个{@link Message}，默认
+		 */
+		IMMEDIATE,
+		/**
+		 * 合并投递：同一轮消息循环内到达的结果，用一个{@link Message}批量处理
+		 */
+		BATCH_PER_LOOP,
+		/**
+		 * 合并投递：按帧（约16ms）对齐，每帧批量处理一次
+		 */
+		BATCH_PER_FRAME;
+	}
+
+	private static volatile DeliveryMode sDeliveryMode = DeliveryMode.IMMEDIATE;
+	private static volatile long sBatchTimeBudget = 8;
+	/**
+	 * 待批量投递的结果和进度，先进先出，保证投递顺序与发送顺序一致
+	 */
+	private static final ConcurrentLinkedQueue<AsyncTaskResult> sPendingDeliveries = new ConcurrentLinkedQueue<AsyncTaskResult>();
+	private static final AtomicBoolean sBatchScheduled = new AtomicBoolean();
 
 	protected static final InternalHandler sHandler;
 	static {
@@ -198,11 +273,34 @@ public abstract class AsyncTask<Params, Progress, Result> {
 	private final FutureTask<Result> mFuture;
 
 	private volatile Status mStatus = Status.PENDING;
+	private volatile PriorityExecutor.Priority mPriority = PriorityExecutor.Priority.NORMAL;
 
-	private final AtomicBoolean mCancelled = new AtomicBoolean();
-	private final AtomicBoolean mTaskInvoked = new AtomicBoolean();
+	/**
+	 * 任务的状态标记合并在一个int里，通过{@link #sStateUpdater}做CAS，不再为每个标记创建Atomic对象
+	 */
+	private static final int STATE_CANCELLED = 1;
+	private static final int STATE_INVOKED = 1 << 1;
+	private static final int STATE_PROGRESS_SCHEDULED = 1 << 2;
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<AsyncTask> sStateUpdater = AtomicIntegerFieldUpdater.newUpdater(
+			AsyncTask.class, "mState");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<AsyncTask, Object[]> sProgressUpdater = AtomicReferenceFieldUpdater
+			.newUpdater(AsyncTask.class, Object[].class, "mLatestProgress");
+	private volatile int mState;
+	/**
+	 * 开启{@link TaskMetrics}时记录的提交时间
+	 */
+	private long mSubmitTime;
 	private FinishedListener finishedListener;
 
+	/**
+	 * 进度节流：<0 不节流；>=0 只投递最新的进度，且两次投递至少间隔这么多毫秒
+	 */
+	private volatile long mProgressInterval = -1;
+	private volatile long mLastProgressTime;
+	private volatile Object[] mLatestProgress;
+
 	/**
 	 * Indicates the current status of the task. Each status will be set only once
 	 * during the lifetime of a task.
@@ -222,6 +320,34 @@ public abstract class AsyncTask<Params, Progress, Result> {
 		FINISHED,
 	}
 
+	/**
+	 * @return {@link #mLruSerialExecutor}中排队的任务数
+	 */
+	static int getLruQueueSize() {
+		return ((SmartSerialExecutor) mLruSerialExecutor).getQueueSize();
+	}
+
+	/**
+	 * 在主线程执行
+	 */
+	static void runOnMainThread(Runnable runnable) {
+		sHandler.post(runnable);
+	}
+
+	/**
+	 * 延时在主线程执行
+	 */
+	static void runOnMainThreadDelayed(Runnable runnable, long delayMillis) {
+		sHandler.postDelayed(runnable, delayMillis);
+	}
+
+	/**
+	 * 移除尚未执行的{@link #runOnMainThreadDelayed(Runnable, long)}
+	 */
+	static void removeFromMainThread(Runnable runnable) {
+		sHandler.removeCallbacks(runnable);
+	}
+
 	/** @hide Used to force static handler to be created. */
 	public static void init() {
 		sHandler.getLooper();
@@ -232,48 +358,109 @@ public abstract class AsyncTask<Params, Progress, Result> {
 		sDefaultExecutor = exec;
 	}
 
+	/**
+	 * 设置结果投递到主线程的方式。大量任务同时完成时，批量投递可以避免主线程消息堆积造成卡顿。
+	 * <p>结果与进度都经过同一个队列，投递顺序与发送顺序一致。建议在应用启动时设置。
+	 *
+	 * @param mode if mode is null, see it as {@link DeliveryMode#IMMEDIATE}.
+	 */
+	public static void setDeliveryMode(DeliveryMode mode) {
+		sDeliveryMode = mode == null ? DeliveryMode.IMMEDIATE : mode;
+	}
+
+	public static DeliveryMode getDeliveryMode() {
+		return sDeliveryMode;
+	}
+
+	/**
+	 * 批量投递时，每一批在主线程最多占用的时间，超出的部分留到下一轮（或下一帧）处理。
+	 *
+	 * @param time <=0 不限制
+	 * @param unit if timeunit is null, see time as millisecond.
+	 */
+	public static void setBatchTimeBudget(long time, TimeUnit unit) {
+		sBatchTimeBudget = unit == null ? time : unit.toMillis(time);
+	}
+
 	/**
 	 * Creates a new asynchronous task. This constructor must be invoked on the UI thread.
 	 */
 	public AsyncTask() {
 		mWorker = new WorkerRunnable<Params, Result>() {
 			public Result call() throws Exception {
-				mTaskInvoked.set(true);
+				setState(STATE_INVOKED);
 				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-				return postResult(doInBackground(mParams));
-			}
-		};
-
-		mFuture = new FutureTask<Result>(mWorker) {
-			@Override
-			protected void done() {
+				if (!TaskMetrics.isEnabled()) return postResult(doInBackground(mParams));
+				long start = System.nanoTime();
+				TaskMetrics.onStarted(mSubmitTime == 0 ? -1 : start - mSubmitTime);
+				Result result;
 				try {
-					postResultIfNotInvoked(get());
-				} catch (InterruptedException e) {
-					android.util.Log.w(LOG_TAG, e);
-				} catch (ExecutionException e) {
-					throw new RuntimeException("An error occured while executing doInBackground()", e.getCause());
-				} catch (CancellationException e) {
-					postResultIfNotInvoked(null);
+					result = doInBackground(mParams);
+				} finally {
+					TaskMetrics.onRunFinished(System.nanoTime() - start);
 				}
+				return postResult(result);
 			}
 		};
+
+		mFuture = new TaskFuture(mWorker);
 	}
 
 	private void postResultIfNotInvoked(Result result) {
-		final boolean wasTaskInvoked = mTaskInvoked.get();
+		final boolean wasTaskInvoked = hasState(STATE_INVOKED);
 		if (!wasTaskInvoked) {
 			postResult(result);
 		}
 	}
 
 	private Result postResult(Result result) {
-		@SuppressWarnings("unchecked")
-		Message message = sHandler.obtainMessage(MESSAGE_POST_RESULT, new AsyncTaskResult<Result>(this, result));
-		message.sendToTarget();
+		sendToMainThread(AsyncTaskResult.obtain(MESSAGE_POST_RESULT, this, result, null));
 		return result;
 	}
 
+	private static void sendToMainThread(AsyncTaskResult data) {
+		if (sDeliveryMode == DeliveryMode.IMMEDIATE) {
+			sHandler.obtainMessage(data.mWhat, data).sendToTarget();
+		} else {
+			sPendingDeliveries.offer(data);
+			scheduleBatch();
+		}
+	}
+
+	private static void scheduleBatch() {
+		if (sBatchScheduled.compareAndSet(false, true)) {
+			if (sDeliveryMode == DeliveryMode.BATCH_PER_FRAME) {
+				long now = SystemClock.uptimeMillis();
+				sHandler.sendEmptyMessageAtTime(MESSAGE_POST_BATCH, now - now % FRAME_INTERVAL_MILLIS + FRAME_INTERVAL_MILLIS);
+			} else {
+				sHandler.sendEmptyMessage(MESSAGE_POST_BATCH);
+			}
+		}
+	}
+
+	private boolean hasState(int flag) {
+		return (mState & flag) != 0;
+	}
+
+	/**
+	 * @return false if the flag has already been set
+	 */
+	private boolean setState(int flag) {
+		for (;;) {
+			int state = mState;
+			if ((state & flag) != 0) return false;
+			if (sStateUpdater.compareAndSet(this, state, state | flag)) return true;
+		}
+	}
+
+	private void clearState(int flag) {
+		for (;;) {
+			int state = mState;
+			if ((state & flag) == 0) return;
+			if (sStateUpdater.compareAndSet(this, state, state & ~flag)) return;
+		}
+	}
+
 	/**
 	 * Returns the current status of this task.
 	 *
@@ -283,6 +470,24 @@ public abstract class AsyncTask<Params, Progress, Result> {
 		return mStatus;
 	}
 
+	/**
+	 * Returns the priority used by a {@link PriorityExecutor}.
+	 */
+	public final PriorityExecutor.Priority getPriority() {
+		return mPriority;
+	}
+
+	/**
+	 * 设置任务优先级，仅在通过{@link PriorityExecutor}执行时生效，需在执行前设置。
+	 *
+	 * @param priority if priority is null, see it as {@link PriorityExecutor.Priority#NORMAL}.
+	 * @return This instance of AsyncTask.
+	 */
+	public final AsyncTask<Params, Progress, Result> setPriority(PriorityExecutor.Priority priority) {
+		mPriority = priority == null ? PriorityExecutor.Priority.NORMAL : priority;
+		return this;
+	}
+
 	/**
 	 * Override this method to perform a computation on a background thread. The
 	 * specified parameters are the parameters passed to {@link #execute}
@@ -380,7 +585,7 @@ public abstract class AsyncTask<Params, Progress, Result> {
 	 * @see #cancel(boolean)
 	 */
 	public final boolean isCancelled() {
-		return mCancelled.get();
+		return hasState(STATE_CANCELLED);
 	}
 
 	/**
@@ -413,7 +618,6 @@ public abstract class AsyncTask<Params, Progress, Result> {
 	 * @see #onCancelled(Object)
 	 */
 	public final boolean cancel(boolean mayInterruptIfRunning) {
-		mCancelled.set(true);
 		return mFuture.cancel(mayInterruptIfRunning);
 	}
 
@@ -524,6 +728,10 @@ public abstract class AsyncTask<Params, Progress, Result> {
 		onPreExecute();
 
 		mWorker.mParams = params;
+		if (TaskMetrics.isEnabled()) {
+			mSubmitTime = System.nanoTime();
+			TaskMetrics.onSubmitted();
+		}
 		exec.execute(mFuture);
 
 		return this;
@@ -542,6 +750,21 @@ public abstract class AsyncTask<Params, Progress, Result> {
 		sDefaultExecutor.execute(runnable);
 	}
 
+	/**
+	 * 按优先级执行Runnable，仅当默认执行器为{@link PriorityExecutor}时优先级生效。
+	 *
+	 * @see #execute(Runnable)
+	 * @see #setDefaultExecutor(Executor)
+	 */
+	public static void execute(Runnable runnable, PriorityExecutor.Priority priority) {
+		Executor exec = sDefaultExecutor;
+		if (exec instanceof PriorityExecutor) {
+			((PriorityExecutor) exec).execute(runnable, priority);
+		} else {
+			exec.execute(runnable);
+		}
+	}
+
 	/**
 	 * <p> 用于瞬间大量并发的场景，比如，假设用户拖动{@link ListView}时如果需要启动大量异步线程，而拖动过去时间很久的用户已经看不到，允许任务丢失。
 	 * <p> This method execute runnable wisely when a large number of task will be submitted.
@@ -562,18 +785,63 @@ public abstract class AsyncTask<Params, Progress, Result> {
 	 * {@link #onProgressUpdate} will note be called if the task has been
 	 * canceled.
 	 *
+	 * <p>设置了{@link #setProgressThrottle(long, TimeUnit)}时，只有最新的进度会被投递，
+	 * 被覆盖的进度在发送到主线程之前就被丢弃。
+	 *
 	 * @param values The progress values to update the UI with.
 	 *
 	 * @see #onProgressUpdate
 	 * @see #doInBackground
 	 */
 	protected final void publishProgress(Progress... values) {
-		if (!isCancelled()) {
-			sHandler.obtainMessage(MESSAGE_POST_PROGRESS, new AsyncTaskResult<Progress>(this, values)).sendToTarget();
+		if (isCancelled()) return;
+		long interval = mProgressInterval;
+		if (interval < 0) {
+			sendToMainThread(AsyncTaskResult.obtain(MESSAGE_POST_PROGRESS, this, null, values));
+			return;
+		}
+		// 最新的进度覆盖未投递的旧进度，同一时刻最多只有一个待处理的消息
+		mLatestProgress = values;
+		if (setState(STATE_PROGRESS_SCHEDULED)) {
+			Message msg = sHandler.obtainMessage(MESSAGE_POST_LATEST_PROGRESS, this);
+			long delay = mLastProgressTime + interval - SystemClock.uptimeMillis();
+			if (delay > 0) sHandler.sendMessageDelayed(msg, delay);
+			else sHandler.sendMessage(msg);
 		}
 	}
 
+	/**
+	 * 进度节流，适合下载等频繁更新进度的任务：只投递最新的进度（latest wins），且两次投递间隔不小于interval。
+	 * 任务结束前，尚未投递的最新进度会在{@link #onPostExecute(Object)}之前投递。
+	 *
+	 * @param interval <0 不节流（默认）；0 只合并，不限制间隔
+	 * @param unit     if timeunit is null, see interval as millisecond.
+	 * @return This instance of AsyncTask.
+	 */
+	public final AsyncTask<Params, Progress, Result> setProgressThrottle(long interval, TimeUnit unit) {
+		mProgressInterval = unit == null || interval < 0 ? interval : unit.toMillis(interval);
+		return this;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void deliverLatestProgress() {
+		// 先复位再取值：取值之后发布的进度会重新调度
+		clearState(STATE_PROGRESS_SCHEDULED);
+		Progress[] values = (Progress[]) sProgressUpdater.getAndSet(this, null);
+		if (values == null || mStatus == Status.FINISHED || isCancelled()) return;
+		mLastProgressTime = SystemClock.uptimeMillis();
+		onProgressUpdate(values);
+	}
+
+	@SuppressWarnings("unchecked")
 	private void finish(Result result) {
+		Progress[] progress = (Progress[]) sProgressUpdater.getAndSet(this, null);
+		if (progress != null && !isCancelled()) onProgressUpdate(progress);
+		if (TaskMetrics.isEnabled()) {
+			if (isCancelled()) TaskMetrics.onCancelled();
+			else TaskMetrics.onCompleted();
+		}
+		if (finishedListener instanceof ResultListener) ((ResultListener) finishedListener).onResult(result);
 		if (isCancelled()) {
 			onCancelled(result);
 			if (finishedListener != null) finishedListener.onCancelled();
@@ -601,34 +869,118 @@ public abstract class AsyncTask<Params, Progress, Result> {
 			super(looper);
 		}
 
-		@SuppressWarnings({"unchecked", "RawUseOfParameterizedType"})
 		@Override
 		public void handleMessage(Message msg) {
-			AsyncTaskResult result = (AsyncTaskResult) msg.obj;
-			switch (msg.what) {
+			if (msg.what == MESSAGE_POST_BATCH) {
+				handleBatch();
+			} else if (msg.what == MESSAGE_POST_LATEST_PROGRESS) {
+				((AsyncTask<?, ?, ?>) msg.obj).deliverLatestProgress();
+			} else {
+				dispatch((AsyncTaskResult) msg.obj);
+			}
+		}
+
+		private void handleBatch() {
+			// 先复位，处理期间新到达的结果会重新调度下一批
+			sBatchScheduled.set(false);
+			long budget = sBatchTimeBudget;
+			long deadline = SystemClock.uptimeMillis() + budget;
+			AsyncTaskResult result;
+			while ((result = sPendingDeliveries.poll()) != null) {
+				dispatch(result);
+				if (budget > 0 && SystemClock.uptimeMillis() >= deadline) break;
+			}
+			if (!sPendingDeliveries.isEmpty()) scheduleBatch();
+		}
+
+		@SuppressWarnings({"unchecked", "RawUseOfParameterizedType"})
+		private void dispatch(AsyncTaskResult result) {
+			AsyncTask task = result.mTask;
+			int what = result.mWhat;
+			Object data = result.mResult;
+			Object[] values = result.mData;
+			// 先回收信封，回调里抛出异常也不会泄漏
+			result.recycle();
+			switch (what) {
 				case MESSAGE_POST_RESULT :
-					// There is only one result
-					result.mTask.finish(result.mData[0]);
+					task.finish(data);
 					break;
 				case MESSAGE_POST_PROGRESS :
-					result.mTask.onProgressUpdate(result.mData);
+					task.onProgressUpdate(values);
 					break;
 			}
 		}
 	}
 
+	private class TaskFuture extends FutureTask<Result> implements PriorityExecutor.Prioritized {
+		TaskFuture(Callable<Result> callable) {
+			super(callable);
+		}
+
+		/**
+		 * 执行器丢弃任务时直接取消这个Future，同样要标记为已取消，才会回调{@link #onCancelled()}而不是{@link #onPostExecute(Object)}
+		 */
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			setState(STATE_CANCELLED);
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		protected void done() {
+			try {
+				postResultIfNotInvoked(get());
+			} catch (InterruptedException e) {
+				android.util.Log.w(LOG_TAG, e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("An error occured while executing doInBackground()", e.getCause());
+			} catch (CancellationException e) {
+				postResultIfNotInvoked(null);
+			}
+		}
+
+		@Override
+		public PriorityExecutor.Priority getPriority() {
+			return mPriority;
+		}
+	}
+
 	private static abstract class WorkerRunnable<Params, Result> implements Callable<Result> {
 		Params[] mParams;
 	}
 
+	/**
+	 * 投递到主线程的结果或进度，用完回收到{@link #sPool}复用
+	 */
 	@SuppressWarnings({"RawUseOfParameterizedType"})
-	private static class AsyncTaskResult<Data> {
-		final AsyncTask mTask;
-		final Data[] mData;
+	private static class AsyncTaskResult {
+		private static final ObjectPool<AsyncTaskResult> sPool = new ObjectPool<AsyncTaskResult>(32);
+		int mWhat;
+		AsyncTask mTask;
+		/**
+		 * {@link #MESSAGE_POST_RESULT}的结果
+		 */
+		Object mResult;
+		/**
+		 * {@link #MESSAGE_POST_PROGRESS}的进度
+		 */
+		Object[] mData;
+
+		static AsyncTaskResult obtain(int what, AsyncTask task, Object result, Object[] data) {
+			AsyncTaskResult r = sPool.acquire();
+			if (r == null) r = new AsyncTaskResult();
+			r.mWhat = what;
+			r.mTask = task;
+			r.mResult = result;
+			r.mData = data;
+			return r;
+		}
 
-		AsyncTaskResult(AsyncTask task, Data... data) {
-			mTask = task;
-			mData = data;
+		void recycle() {
+			mTask = null;
+			mResult = null;
+			mData = null;
+			sPool.release(this);
 		}
 	}
 
@@ -638,4 +990,12 @@ public abstract class AsyncTask<Params, Progress, Result> {
 		void onPostExecute();
 	}
 
+	/**
+	 * 需要任务结果的{@link FinishedListener}，在{@link FinishedListener#onPostExecute()}或
+	 * {@link FinishedListener#onCancelled()}之前回调，同样在主线程。
+	 */
+	static interface ResultListener extends FinishedListener {
+		void onResult(Object result);
+	}
+
 }
@@ -0,0 +1,16 @@
+package com.litesuits.android.async;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * {@link CachedTask}结果的编解码器，通过{@link CachedTask#getCacheCodec()}指定。
+ * <p>默认使用{@link CompactCodec}，对字符串、字节数组、基本类型、List、Map直接二进制编码，其余对象退回Java序列化。
+ * 结构固定的结果类型可以实现自己的编解码器，编码更紧凑，且不要求实现{@link java.io.Serializable}。
+ */
+public interface CacheCodec<T> {
+	void encode(T value, DataOutputStream out) throws IOException;
+
+	T decode(DataInputStream in) throws IOException;
+}
@@ -0,0 +1,32 @@
+package com.litesuits.android.async;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+
+/**
+ * {@link CachedTask}缓存数据的存储引擎，通过{@link CachedTask#setCacheStorage(CacheStorage)}指定。
+ * <ul>
+ * <li>{@link FileCacheStorage}：每个key一个文件，默认；</li>
+ * <li>{@link SegmentCacheStorage}：追加写入分段文件，适合key数量很多的场景。</li>
+ * </ul>
+ */
+public interface CacheStorage {
+	/**
+	 * @return 缓存数据，不存在时返回null
+	 */
+	byte[] read(String key) throws IOException;
+
+	void write(String key, byte[] data) throws IOException;
+
+	void remove(String key);
+
+	/**
+	 * 删除所有缓存数据
+	 */
+	void clear();
+
+	/**
+	 * @return 所有条目及其字节数，按写入时间从早到晚排列
+	 */
+	LinkedHashMap<String, Long> entries();
+}
@@ -0,0 +1,152 @@
+package com.litesuits.android.async;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CachedTask}的后写（write-behind）：结果先返回给界面，再由独立的写线程异步编码、写入存储。
+ * <p>等待写入的条目按key合并，同一个key只写最后一次的结果；写线程每次取走当前所有条目，批量写入。
+ * 等待写入的条目数达到上限时{@link #offer(String, Entry)}返回false，由调用者同步写入。
+ */
+class CacheWriter {
+	private static final String TAG = CacheWriter.class.getSimpleName();
+
+	/**
+	 * 一次等待中的写入（或删除）
+	 */
+	static abstract class Entry {
+		/**
+		 * 尚未写入的结果，null 表示删除
+		 */
+		final Object result;
+
+		Entry(Object result) {
+			this.result = result;
+		}
+
+		/**
+		 * 在写线程中执行
+		 */
+		abstract void persist() throws Exception;
+	}
+
+	private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<String, Entry>();
+	private final int maxPending;
+	private Thread thread;
+	private boolean shutdown;
+	/**
+	 * 正在写入的批次，写完之前{@link #flush(long, TimeUnit)}不返回
+	 */
+	private int writing;
+
+	CacheWriter(int maxPending) {
+		if (maxPending <= 0) throw new IllegalArgumentException("maxPending must be > 0");
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * @return 队列已满或已关闭时返回false，调用者需自行写入
+	 */
+	synchronized boolean offer(String key, Entry entry) {
+		if (shutdown) return false;
+		if (!pending.containsKey(key) && pending.size() >= maxPending) return false;
+		// 合并同一个key的写入：保留原来的位置，只替换结果
+		pending.put(key, entry);
+		if (thread == null) {
+			thread = new Thread("CachedTask Writer") {
+				@Override
+				public void run() {
+					loop();
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+		}
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * @return 该key尚未写入的条目，没有时返回null
+	 */
+	synchronized Entry peek(String key) {
+		return pending.get(key);
+	}
+
+	/**
+	 * 丢弃所有尚未写入的条目
+	 */
+	synchronized void clear() {
+		pending.clear();
+		notifyAll();
+	}
+
+	/**
+	 * 等待已提交的条目全部写入
+	 *
+	 * @param unit if timeunit is null, see timeout as millisecond.
+	 * @return 超时返回false
+	 */
+	synchronized boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+		if (unit == null) unit = TimeUnit.MILLISECONDS;
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!pending.isEmpty() || writing > 0) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0) return false;
+			TimeUnit.NANOSECONDS.timedWait(this, left);
+		}
+		return true;
+	}
+
+	/**
+	 * 不再接收新的条目，已提交的条目写完后线程退出
+	 */
+	synchronized void shutdown() {
+		shutdown = true;
+		notifyAll();
+	}
+
+	private void loop() {
+		List<String> keys = new ArrayList<String>();
+		List<Entry> batch = new ArrayList<Entry>();
+		while (true) {
+			synchronized (this) {
+				while (pending.isEmpty()) {
+					if (shutdown) {
+						thread = null;
+						return;
+					}
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// 写线程不响应中断，继续等待
+					}
+				}
+				// 复制一份：写入期间同一个key可能被替换
+				keys.addAll(pending.keySet());
+				batch.addAll(pending.values());
+				writing++;
+			}
+			for (Entry entry : batch) {
+				try {
+					entry.persist();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+			synchronized (this) {
+				// 写入期间被替换的条目留待下一批
+				for (int i = 0; i < keys.size(); i++) {
+					if (pending.get(keys.get(i)) == batch.get(i)) pending.remove(keys.get(i));
+				}
+				writing--;
+				notifyAll();
+			}
+			if (Log.isPrint) Log.d(TAG, "write behind " + batch.size() + " entries");
+			keys.clear();
+			batch.clear();
+		}
+	}
+}
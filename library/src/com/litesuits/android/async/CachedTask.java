@@ -4,44 +4,208 @@ import android.content.Context;
 
 import java.io.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * <p> Cached AsyncTask 缓存异步任务
  * <p> 它主要用于获取网络数据，给它一个缓存时间，只要未超时，它将先从本地获取，仅当超时或本地获取失败时才去真正联网完成。
  * <b>每个Task都必须有唯一标示：key，</b>它唯一标示一个缓存任务，不同的任务绝对不能一样，否则会混淆超时时间。
- * <b>{@link #CachedTask#Result} 需要序列化</b>否则不能或者不能完整的读取缓存。
+ * <b>{@link #CachedTask#Result} 需要序列化</b>否则不能或者不能完整的读取缓存：
+ * 默认使用{@link CompactCodec}，结果不是{@link Serializable}时需覆盖{@link #getCacheCodec()}提供编解码器。
  * @author MaTianyu
  *         2014-2-23下午8:57:55
  */
-public abstract class CachedTask<Params, Progress, Result extends Serializable>
+public abstract class CachedTask<Params, Progress, Result>
 		extends SafeTask<Params, Progress, Result> {
 	private static final String TAG = CachedTask.class.getSimpleName();
 	private static final String DEFAULT_PATH = "/cachedtask";
 	private long expiredTime = 0;
+	/**
+	 * 过期后仍可先返回旧结果的最长时间，0表示不开启
+	 */
+	private long maxStaleTime = 0;
 	private static String cachePath;
 	private String key;
-	private static ConcurrentHashMap<String, Long> cachedTimeMap = new ConcurrentHashMap<String, Long>();
+	/**
+	 * key -> 缓存时间，持久化在缓存目录中，进程重启后依然有效
+	 */
+	private static volatile ExpiryIndex expiryIndex;
+	/**
+	 * key -> 进行中的联网请求
+	 */
+	private static final ConcurrentHashMap<String, Flight> inFlights = new ConcurrentHashMap<String, Flight>();
+	/**
+	 * 磁盘缓存容量控制，超出时按Lru淘汰，默认不限制
+	 */
+	private static final DiskCacheBudget diskBudget = new DiskCacheBudget(new DiskCacheBudget.Evictor() {
+		@Override
+		public void evict(String key) {
+			removeEntry(key);
+		}
+	});
 
-	public static void cleanCacheFiles(Context context) {
-		cachedTimeMap.clear();
+	/**
+	 * 限制磁盘缓存的大小，超出时在后台按访问顺序淘汰最久未使用的缓存。
+	 *
+	 * @param maxBytes <=0 不限制字节数
+	 * @param maxCount <=0 不限制条目数
+	 */
+	public static void setDiskCacheBudget(long maxBytes, int maxCount) {
+		diskBudget.setBudget(maxBytes, maxCount);
+	}
+	/**
+	 * 缓存数据的存储引擎，默认每个key一个文件
+	 */
+	private static volatile CacheStorage storage;
+
+	/**
+	 * 指定缓存数据的存储引擎，如key数量很多时使用{@link SegmentCacheStorage}。
+	 * 需在首个CachedTask执行前调用，切换后之前存储的缓存不再可见。
+	 *
+	 * @param cacheStorage null 恢复默认的{@link FileCacheStorage}
+	 */
+	public static void setCacheStorage(CacheStorage cacheStorage) {
+		storage = cacheStorage;
+	}
+
+	/**
+	 * 后写模式的写线程，null 表示同步写入
+	 */
+	private static volatile CacheWriter writer;
+
+	/**
+	 * 开启后写（write-behind）：联网结果立即返回，由独立的写线程在后台编码并写入磁盘，
+	 * 同一个key多次写入只写最后一次。写入完成前读取该key会直接拿到等待写入的结果。
+	 * <p>等待写入的条目达到上限时，任务在自己的线程中同步写入。
+	 *
+	 * @param maxPending 最多等待写入的条目数，<=0 关闭（已提交的条目仍会写完）
+	 */
+	public static void setWriteBehind(int maxPending) {
+		CacheWriter old;
+		synchronized (CachedTask.class) {
+			old = writer;
+			writer = maxPending > 0 ? new CacheWriter(maxPending) : null;
+		}
+		if (old != null) old.shutdown();
+	}
+
+	/**
+	 * 等待后写模式下已提交的结果，以及缓存时间索引的修改全部写入磁盘，可在测试或退出前调用。
+	 *
+	 * @param unit if timeunit is null, see timeout as millisecond.
+	 * @return 超时返回false
+	 */
+	public static boolean flushPendingWrites(long timeout, TimeUnit unit) throws InterruptedException {
+		if (unit == null) unit = TimeUnit.MILLISECONDS;
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		CacheWriter w = writer;
+		if (w != null && !w.flush(timeout, unit)) return false;
+		ExpiryIndex index = expiryIndex;
+		return index == null || index.flush(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	private static CacheStorage getStorage() {
+		CacheStorage s = storage;
+		if (s == null) {
+			synchronized (CachedTask.class) {
+				if (storage == null) storage = new FileCacheStorage(new File(cachePath));
+				s = storage;
+			}
+		}
+		return s;
+	}
+	/**
+	 * 磁盘缓存前的内存缓存，命中时不读文件也不反序列化，默认关闭
+	 */
+	private static volatile LruMemoryCache<String, Object> memoryCache;
+
+	/**
+	 * 开启内存缓存，按条目个数限制。
+	 * <p>注意：命中内存缓存时，多个任务拿到的是同一个结果对象，不要修改它。
+	 *
+	 * @param maxSize <=0 关闭内存缓存
+	 */
+	public static void setMemoryCacheSize(int maxSize) {
+		setMemoryCacheSize(maxSize, null);
+	}
+
+	/**
+	 * 开启内存缓存，按权重（如对象大小）限制。
+	 *
+	 * @param maxWeight <=0 关闭内存缓存
+	 * @param weigher   if weigher is null, each entry weighs 1.
+	 */
+	public static void setMemoryCacheSize(int maxWeight, LruMemoryCache.Weigher<String, Object> weigher) {
+		memoryCache = maxWeight > 0 ? new LruMemoryCache<String, Object>(maxWeight, weigher) : null;
+	}
+
+	/**
+	 * 提前在后台加载缓存时间索引，可在Application启动时调用，使冷启动时的首个CachedTask不必等待索引加载。
+	 */
+	public static void preloadIndex(Context context) {
 		cachePath = context.getFilesDir().getAbsolutePath() + DEFAULT_PATH;
-		File file = new File(cachePath);
-		final File[] fileList = file.listFiles();
-		if (fileList != null) {
-			TaskExecutor.start(new Runnable() {
-				@Override
-				public void run() {
-					for (File f : fileList) {
-						if (f.isFile()) f.delete();
-					}
-				}
-			});
+		getExpiryIndex();
+	}
 
+	private static ExpiryIndex getExpiryIndex() {
+		if (expiryIndex == null) {
+			synchronized (CachedTask.class) {
+				if (expiryIndex == null) expiryIndex = new ExpiryIndex(new File(cachePath));
+			}
 		}
+		return expiryIndex;
+	}
+
+	public static void cleanCacheFiles(Context context) {
+		LruMemoryCache<String, Object> memory = memoryCache;
+		if (memory != null) memory.clear();
+		cachePath = context.getFilesDir().getAbsolutePath() + DEFAULT_PATH;
+		CacheWriter w = writer;
+		if (w != null) w.clear();
+		getExpiryIndex().clear();
+		diskBudget.clear();
+		getStorage().clear();
 	}
-    public static void removeKeyValue(String key) {
-        cachedTimeMap.remove(key);
+    /**
+     * 删除一个缓存：内存、索引和缓存数据（数据在后台删除）。
+     */
+    public static void removeKeyValue(final String key) {
+        diskBudget.onRemove(key);
+        forgetEntry(key);
+        if (cachePath == null) return;
+        // 后写模式下删除也交给写线程，保证在此前等待的写入之后执行
+        CacheWriter w = writer;
+        if (w != null && w.offer(key, new CacheWriter.Entry(null) {
+            @Override
+            void persist() {
+                getStorage().remove(key);
+            }
+        })) return;
+        TaskExecutor.start(new Runnable() {
+            @Override
+            public void run() {
+                getStorage().remove(key);
+            }
+        });
+    }
+
+    /**
+     * 淘汰时调用，在后台线程执行
+     */
+    private static void removeEntry(String key) {
+        forgetEntry(key);
+        if (cachePath != null) getStorage().remove(key);
+    }
+
+    private static void forgetEntry(String key) {
+        ExpiryIndex index = expiryIndex;
+        if (index != null) index.remove(key);
+        LruMemoryCache<String, Object> memory = memoryCache;
+        if (memory != null) memory.remove(key);
     }
 
     /**
@@ -54,6 +218,8 @@ public abstract class CachedTask<Params, Progress, Result extends Serializable>
 		if (context == null) throw new RuntimeException("CachedTask Initialized Must has Context");
 		cachePath = context.getFilesDir().getAbsolutePath() + DEFAULT_PATH;
         if (key == null) throw new RuntimeException("CachedTask Must Has Key for Search ");
+		// 首次创建时开始在后台加载索引
+		getExpiryIndex();
 		this.key = key;
 		if (unit != null) expiredTime = unit.toMillis(cacheTime);
 		else expiredTime = cacheTime;
@@ -61,34 +227,50 @@ public abstract class CachedTask<Params, Progress, Result extends Serializable>
 
 	protected abstract Result doConnectNetwork(Params... params) throws Exception;
 
+	/**
+	 * 开启 stale-while-revalidate：缓存过期但未超过maxStale时，立即返回旧结果（{@link #onPostExecuteSafely(Object, Exception)}），
+	 * 同时在后台联网刷新，新结果通过{@link #onRefreshedSafely(Object)}回调。
+	 *
+	 * @param maxStale 过期后仍可使用旧结果的最长时间，<=0 关闭
+	 * @param unit     if timeunit is null, see maxStale as millisecond.
+	 * @return This instance of CachedTask.
+	 */
+	public CachedTask<Params, Progress, Result> setStaleWhileRevalidate(long maxStale, TimeUnit unit) {
+		if (unit != null) maxStaleTime = unit.toMillis(maxStale);
+		else maxStaleTime = maxStale;
+		return this;
+	}
+
+	/**
+	 * <p> Main UI Thread
+	 * <p> 开启{@link #setStaleWhileRevalidate(long, TimeUnit)}后，先返回了旧结果，后台刷新得到新结果时回调。
+	 * 这个方法的任意异常都能被捕获：它是安全的。
+	 *
+	 * @param result 新的结果
+	 */
+	protected void onRefreshedSafely(Result result) throws Exception {}
+
     @Override
     protected final Result doInBackgroundSafely(Params... params) throws Exception {
         Result res = null;
         try {
-            Long time = cachedTimeMap.get(key);
+            Long time = getExpiryIndex().get(key);
             long lastTime = time == null ? 0 : time;
-            if (System.currentTimeMillis() - lastTime >= expiredTime) {
-                res = doConnectNetwork(params);
-                if (res != null) {
-                    if (Log.isPrint) Log.d(TAG, "doConnectNetwork: sucess");
-                    cachedTimeMap.put(key, System.currentTimeMillis());
-                    saveResultToCache(res);
-                } else {
-                    if (Log.isPrint) Log.d(TAG, "doConnectNetwork: false");
+            long age = System.currentTimeMillis() - lastTime;
+            if (age >= expiredTime) {
+                if (time != null && age < expiredTime + maxStaleTime) {
                     res = getResultFromCache();
-                }
-            } else {
-                res = getResultFromCache();
-                if (res == null) {
-                    res = doConnectNetwork(params);
                     if (res != null) {
-                        if (Log.isPrint) Log.d(TAG, "doConnectNetwork: sucess");
-                        cachedTimeMap.put(key, System.currentTimeMillis());
-                        saveResultToCache(res);
-                    } else {
-                        if (Log.isPrint) Log.d(TAG, "doConnectNetwork: false");
+                        if (Log.isPrint) Log.d(TAG, key + " return stale result, refresh in background");
+                        refreshInBackground(params);
+                        return res;
                     }
                 }
+                res = loadFromNetwork(params);
+                if (res == null) res = getResultFromCache();
+            } else {
+                res = getResultFromCache();
+                if (res == null) res = loadFromNetwork(params);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -96,49 +278,266 @@ public abstract class CachedTask<Params, Progress, Result extends Serializable>
         return res;
     }
 
+    /**
+     * 同一个key同时只有一个联网请求：并发的任务等待并共享这一次请求的结果（同一个对象）。
+     * 错过了上一次请求的任务在注册后重新检查索引，缓存已经是新的则直接读缓存。
+     */
+    @SuppressWarnings("unchecked")
+    private Result loadFromNetwork(Params... params) throws Exception {
+        Flight flight = new Flight();
+        Flight existing = inFlights.putIfAbsent(key, flight);
+        if (existing != null) {
+            if (Log.isPrint) Log.d(TAG, key + " wait for in-flight network request");
+            existing.latch.await();
+            if (existing.error != null) throw existing.error;
+            return (Result) existing.result;
+        }
+        try {
+            // 读索引之后、注册之前，可能刚有一次请求完成并移除：缓存已是新的就不再联网
+            Long time = getExpiryIndex().get(key);
+            if (time != null && System.currentTimeMillis() - time < expiredTime) {
+                Result cached = getResultFromCache();
+                if (cached != null) {
+                    if (Log.isPrint) Log.d(TAG, key + " refreshed by the previous request, use cache");
+                    flight.result = cached;
+                    return cached;
+                }
+            }
+            Result res = doConnectNetwork(params);
+            if (res != null) {
+                if (Log.isPrint) Log.d(TAG, "doConnectNetwork: sucess");
+                getExpiryIndex().put(key, System.currentTimeMillis());
+                saveResultToCache(res);
+            } else {
+                if (Log.isPrint) Log.d(TAG, "doConnectNetwork: false");
+            }
+            flight.result = res;
+            return res;
+        } catch (Exception e) {
+            flight.error = e;
+            throw e;
+        } finally {
+            // 先移除再唤醒，之后到来的任务直接读缓存
+            inFlights.remove(key, flight);
+            flight.latch.countDown();
+        }
+    }
+
+    private void refreshInBackground(final Params... params) {
+        TaskExecutor.start(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Result fresh = loadFromNetwork(params);
+                    if (fresh == null || isCancelled()) return;
+                    AsyncTask.runOnMainThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                onRefreshedSafely(fresh);
+                            } catch (Exception e) {
+                                e.printStackTrace();
+                            }
+                        }
+                    });
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * 一次进行中的联网请求
+     */
+    private static class Flight {
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile Object result;
+        volatile Exception error;
+    }
+
+	/**
+	 * 指定结果的编解码器，默认{@link CompactCodec}。结果没有实现{@link Serializable}时，必须覆盖此方法。
+	 */
+	@SuppressWarnings("unchecked")
+	protected CacheCodec<Result> getCacheCodec() {
+		return (CacheCodec<Result>) (CacheCodec<?>) CompactCodec.INSTANCE;
+	}
+
 	@SuppressWarnings("unchecked")
 	private Result getResultFromCache() {
-		ObjectInputStream ois = null;
+		LruMemoryCache<String, Object> memory = memoryCache;
+		if (memory != null) {
+			Object obj = memory.get(key);
+			if (obj != null) {
+				diskBudget.onRead(key);
+				if (Log.isPrint) Log.i(TAG, key + " read from memory cache: " + obj);
+				return (Result) obj;
+			}
+		}
+		CacheWriter w = writer;
+		CacheWriter.Entry unwritten = w == null ? null : w.peek(key);
+		if (unwritten != null) {
+			// 等待写入的结果，或等待执行的删除
+			if (unwritten.result != null) diskBudget.onRead(key);
+			return (Result) unwritten.result;
+		}
 		try {
-			ois = new ObjectInputStream(new FileInputStream(new File(cachePath, key)));
-			Object obj = ois.readObject();
-
+			byte[] data = getStorage().read(key);
+			Result obj = data == null ? null : decode(data);
 			if (obj != null) {
+				diskBudget.onRead(key);
 				if (Log.isPrint) Log.i(TAG, key+ " read from cache: "+obj);
-				return (Result) obj;
+				if (memory != null) memory.put(key, obj);
+				return obj;
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
-		} finally {
-			if (ois != null) try {
-				ois.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
 		}
 		if (Log.isPrint) Log.e(TAG, "read ResultFromCache: fail ");
 		return null;
 	}
 
 	private boolean saveResultToCache(Result res) {
-		ObjectOutputStream oos = null;
+		LruMemoryCache<String, Object> memory = memoryCache;
+		if (memory != null) memory.put(key, res);
+		CacheWriter w = writer;
+		if (w != null && w.offer(key, newWriteEntry(key, getCacheCodec(), res))) return true;
 		try {
-			File dir = new File(cachePath);
-			if (!dir.exists()) dir.mkdirs();
-			oos = new ObjectOutputStream(new FileOutputStream(new File(dir, key)));
-			oos.writeObject(res);
-			if (Log.isPrint) Log.i(TAG, key +"  saveto cache: "+res);
+			writeToStorage(key, getCacheCodec(), res);
 			return true;
 		} catch (Exception e) {
 			e.printStackTrace();
-		} finally {
-			if (oos != null) try {
-				oos.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
 		}
 		if (Log.isPrint) Log.e(TAG, "save Result To Cache: fail");
 		return false;
 	}
+
+	/**
+	 * 静态方法：等待写入的条目不持有task本身
+	 */
+	private static <T> CacheWriter.Entry newWriteEntry(final String key, final CacheCodec<T> codec, final T res) {
+		return new CacheWriter.Entry(res) {
+			@Override
+			void persist() throws Exception {
+				writeToStorage(key, codec, res);
+			}
+		};
+	}
+
+	private static <T> void writeToStorage(String key, CacheCodec<T> codec, T res) throws IOException {
+		CacheStorage cacheStorage = getStorage();
+		byte[] data = encode(codec, res);
+		cacheStorage.write(key, data);
+		diskBudget.onWrite(key, data.length, cacheStorage);
+		if (Log.isPrint) Log.i(TAG, key + "  saveto cache: " + res);
+	}
+
+	/*********************************** 缓存文件格式 *******************************/
+	/**
+	 * 缓存文件格式：[1字节魔数][1字节标记][编解码器输出]。
+	 * 标记含{@link #FLAG_DEFLATE}时为：[1字节魔数][1字节标记][int 原始长度][Deflate压缩后的编解码器输出]。
+	 * 旧版本直接用{@link ObjectOutputStream}写入的文件以0xACED开头，仍可读取。
+	 */
+	private static final byte ENTRY_MAGIC = 0x4C;
+	private static final int FLAG_DEFLATE = 0x01;
+	/**
+	 * 编码后超过此字节数时压缩，<0 不压缩
+	 */
+	private static volatile int compressThreshold = -1;
+
+	/**
+	 * 开启缓存数据压缩：编码后大于threshold字节的结果用Deflate压缩后再写入，压缩后没有变小则不压缩。
+	 * 每个条目自带标记，开关或修改阈值后，已有的压缩、未压缩条目都能正常读取。
+	 *
+	 * @param threshold <0 关闭压缩（默认）
+	 */
+	public static void setCompressThreshold(int threshold) {
+		compressThreshold = threshold;
+	}
+
+	private static <T> byte[] encode(CacheCodec<T> codec, T res) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		out.writeByte(ENTRY_MAGIC);
+		out.writeByte(0);
+		codec.encode(res, out);
+		out.flush();
+		byte[] data = bos.toByteArray();
+		int threshold = compressThreshold;
+		if (threshold >= 0 && data.length - 2 > threshold) {
+			byte[] compressed = deflate(data, 2, data.length - 2);
+			if (compressed != null) return compressed;
+		}
+		return data;
+	}
+
+	/**
+	 * @return 压缩后的完整条目，没有变小时返回null
+	 */
+	private static byte[] deflate(byte[] data, int offset, int length) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(length / 2 + 16);
+		DataOutputStream out = new DataOutputStream(bos);
+		out.writeByte(ENTRY_MAGIC);
+		out.writeByte(FLAG_DEFLATE);
+		out.writeInt(length);
+		// 缓存读写在任务线程中进行，选择最快的压缩级别
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				int n = deflater.deflate(buffer);
+				out.write(buffer, 0, n);
+				if (out.size() >= length + 2) return null;
+			}
+		} finally {
+			deflater.end();
+		}
+		out.flush();
+		return bos.toByteArray();
+	}
+
+	private static byte[] inflate(byte[] data, int offset, int length, int rawLength) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, offset, length);
+			byte[] raw = new byte[rawLength];
+			int read = 0;
+			while (read < rawLength) {
+				int n = inflater.inflate(raw, read, rawLength - read);
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+				read += n;
+			}
+			if (read != rawLength) throw new StreamCorruptedException("Truncated compressed cache entry");
+			return raw;
+		} catch (DataFormatException e) {
+			throw new StreamCorruptedException("Corrupted compressed cache entry: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Result decode(byte[] data) throws IOException, ClassNotFoundException {
+		if (data.length >= 2 && (data[0] & 0xFF) == 0xAC && (data[1] & 0xFF) == 0xED) {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+			try {
+				return (Result) ois.readObject();
+			} finally {
+				ois.close();
+			}
+		}
+		if (data.length < 2 || data[0] != ENTRY_MAGIC) throw new StreamCorruptedException("Unknown cache format");
+		int flags = data[1];
+		if (flags == 0) {
+			return getCacheCodec().decode(new DataInputStream(new ByteArrayInputStream(data, 2, data.length - 2)));
+		}
+		if (flags != FLAG_DEFLATE || data.length < 6) throw new StreamCorruptedException("Unknown cache flags: " + flags);
+		int rawLength = ((data[2] & 0xFF) << 24) | ((data[3] & 0xFF) << 16) | ((data[4] & 0xFF) << 8) | (data[5] & 0xFF);
+		if (rawLength < 0) throw new StreamCorruptedException("Invalid cache length: " + rawLength);
+		byte[] raw = inflate(data, 6, data.length - 6, rawLength);
+		return getCacheCodec().decode(new DataInputStream(new ByteArrayInputStream(raw)));
+	}
 }
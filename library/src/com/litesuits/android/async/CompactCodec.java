@@ -0,0 +1,204 @@
+package com.litesuits.android.async;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * 默认的紧凑编解码器，每个值以1字节类型标记开头：
+ * <ul>
+ * <li>null、String、byte[]、基本类型包装类：直接二进制编码，没有类描述信息；</li>
+ * <li>{@link ArrayList}、{@link HashMap}、{@link LinkedHashMap}：逐个编码元素，解码为{@link ArrayList}和{@link LinkedHashMap}；</li>
+ * <li>其他{@link Serializable}对象：退回Java序列化。</li>
+ * </ul>
+ * 集合中只要有一个元素需要Java序列化，整个值就用一个{@link ObjectOutputStream}序列化，
+ * 使同类元素共享类描述信息，而不是每个元素单独序列化一次。
+ */
+public class CompactCodec implements CacheCodec<Object> {
+	public static final CompactCodec INSTANCE = new CompactCodec();
+
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_BYTES = 2;
+	private static final byte TYPE_INT = 3;
+	private static final byte TYPE_LONG = 4;
+	private static final byte TYPE_BOOLEAN = 5;
+	private static final byte TYPE_DOUBLE = 6;
+	private static final byte TYPE_FLOAT = 7;
+	private static final byte TYPE_SHORT = 8;
+	private static final byte TYPE_BYTE = 9;
+	private static final byte TYPE_CHAR = 10;
+	private static final byte TYPE_LIST = 11;
+	private static final byte TYPE_MAP = 12;
+	private static final byte TYPE_SERIALIZABLE = 13;
+	/**
+	 * 超过此嵌套深度（或集合中有环）时交给Java序列化
+	 */
+	private static final int MAX_DEPTH = 32;
+
+	@Override
+	public void encode(Object value, DataOutputStream out) throws IOException {
+		if (isCompact(value, 0)) {
+			encodeCompact(value, out);
+		} else if (value instanceof Serializable) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bos);
+			oos.writeObject(value);
+			oos.close();
+			out.writeByte(TYPE_SERIALIZABLE);
+			out.writeInt(bos.size());
+			bos.writeTo(out);
+		} else {
+			throw new NotSerializableException(value.getClass().getName());
+		}
+	}
+
+	/**
+	 * @return 值及其所有元素都能直接二进制编码
+	 */
+	private static boolean isCompact(Object value, int depth) {
+		if (value == null || value instanceof String || value instanceof byte[] || value instanceof Integer
+				|| value instanceof Long || value instanceof Boolean || value instanceof Double || value instanceof Float
+				|| value instanceof Short || value instanceof Byte || value instanceof Character) {
+			return true;
+		}
+		if (depth >= MAX_DEPTH) return false;
+		if (value.getClass() == ArrayList.class) {
+			for (Object o : (List<?>) value) {
+				if (!isCompact(o, depth + 1)) return false;
+			}
+			return true;
+		}
+		if (value.getClass() == HashMap.class || value.getClass() == LinkedHashMap.class) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!isCompact(entry.getKey(), depth + 1) || !isCompact(entry.getValue(), depth + 1)) return false;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 只在{@link #isCompact(Object, int)}返回true时调用
+	 */
+	private void encodeCompact(Object value, DataOutputStream out) throws IOException {
+		if (value == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(TYPE_STRING);
+			// writeUTF限制64K，这里用int长度
+			byte[] bytes = ((String) value).getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+			out.writeByte(TYPE_BYTES);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else if (value instanceof Integer) {
+			out.writeByte(TYPE_INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(TYPE_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Short) {
+			out.writeByte(TYPE_SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(TYPE_BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Character) {
+			out.writeByte(TYPE_CHAR);
+			out.writeChar((Character) value);
+		} else if (value.getClass() == ArrayList.class) {
+			List<?> list = (List<?>) value;
+			out.writeByte(TYPE_LIST);
+			out.writeInt(list.size());
+			for (Object o : list) {
+				encodeCompact(o, out);
+			}
+		} else if (value.getClass() == HashMap.class || value.getClass() == LinkedHashMap.class) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			out.writeByte(TYPE_MAP);
+			out.writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				encodeCompact(entry.getKey(), out);
+				encodeCompact(entry.getValue(), out);
+			}
+		}
+	}
+
+	@Override
+	public Object decode(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+			case TYPE_NULL :
+				return null;
+			case TYPE_STRING :
+				return new String(readBytes(in), "UTF-8");
+			case TYPE_BYTES :
+				return readBytes(in);
+			case TYPE_INT :
+				return in.readInt();
+			case TYPE_LONG :
+				return in.readLong();
+			case TYPE_BOOLEAN :
+				return in.readBoolean();
+			case TYPE_DOUBLE :
+				return in.readDouble();
+			case TYPE_FLOAT :
+				return in.readFloat();
+			case TYPE_SHORT :
+				return in.readShort();
+			case TYPE_BYTE :
+				return in.readByte();
+			case TYPE_CHAR :
+				return in.readChar();
+			case TYPE_LIST : {
+				int size = in.readInt();
+				ArrayList<Object> list = new ArrayList<Object>(size);
+				for (int i = 0; i < size; i++) {
+					list.add(decode(in));
+				}
+				return list;
+			}
+			case TYPE_MAP : {
+				int size = in.readInt();
+				LinkedHashMap<Object, Object> map = new LinkedHashMap<Object, Object>(size * 4 / 3 + 1);
+				for (int i = 0; i < size; i++) {
+					Object key = decode(in);
+					map.put(key, decode(in));
+				}
+				return map;
+			}
+			case TYPE_SERIALIZABLE : {
+				ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)));
+				try {
+					return ois.readObject();
+				} catch (ClassNotFoundException e) {
+					throw new InvalidClassException(e.getMessage());
+				} finally {
+					ois.close();
+				}
+			}
+			default :
+				throw new StreamCorruptedException("Unknown type: " + type);
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) throw new StreamCorruptedException("Negative length: " + length);
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
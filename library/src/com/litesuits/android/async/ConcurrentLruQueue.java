@@ -0,0 +1,116 @@
+package com.litesuits.android.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁（CAS）的定长Lru队列，供{@link AsyncTask}的并发控制器使用。
+ * <p>队列是环形数组上的区间[head, tail)，head和tail打包在一个{@link AtomicLong}中，一次CAS同时修改：
+ * <ul>
+ * <li>{@link #offerLast(Object)}：未满时tail+1；已有<b>capacity</b>个元素时head、tail同时+1，挤出最老的元素；</li>
+ * <li>{@link #pollLast()}：tail-1，取出最新的元素（LIFO）；</li>
+ * <li>{@link #pollFirst()}：head+1，取出最老的元素（FIFO）。</li>
+ * </ul>
+ * 只有队列满时才会挤出元素，从队尾取走元素后腾出的位置可以直接复用。
+ * <p>放入时先用CAS把元素放进tail处的空槽位，再修改区间，区间修改失败则撤回元素重试；
+ * 取出时先修改区间，成功即占有了那个位置，直接取走槽位上的元素。
+ * 因此区间内的位置，以及刚被取出但还没取走的位置，槽位上一定有元素；数组长度大于capacity，
+ * tail处的槽位不会是队头的槽位。任何一方都不会在占有位置后等待别人，不会互相等死。
+ */
+public class ConcurrentLruQueue<E> {
+	private final AtomicReferenceArray<E> slots;
+	private final int capacity;
+	private final int mask;
+	/**
+	 * 高32位为head，低32位为tail，都是会回绕的序号，元素个数为tail - head
+	 */
+	private final AtomicLong range = new AtomicLong();
+
+	public ConcurrentLruQueue(int capacity) {
+		if (capacity <= 0 || capacity >= 1 << 30) throw new IllegalArgumentException("capacity out of range");
+		int length = 1;
+		while (length <= capacity) length <<= 1;
+		this.capacity = capacity;
+		this.mask = length - 1;
+		this.slots = new AtomicReferenceArray<E>(length);
+	}
+
+	private static int head(long range) {
+		return (int) (range >>> 32);
+	}
+
+	private static int tail(long range) {
+		return (int) range;
+	}
+
+	private static long range(int head, int tail) {
+		return ((long) head << 32) | (tail & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * 新元素放在队尾，队列已满时挤出最老的元素。
+	 *
+	 * @return 因此被挤出的最老元素，没有则返回null
+	 */
+	public E offerLast(E e) {
+		if (e == null) throw new NullPointerException("e == null");
+		while (true) {
+			long r = range.get();
+			int head = head(r), tail = tail(r);
+			// 槽位被还没取走的元素或其他放入者占着，重新读取区间
+			if (!slots.compareAndSet(tail & mask, null, e)) {
+				Thread.yield();
+				continue;
+			}
+			if (tail - head < capacity) {
+				if (range.compareAndSet(r, range(head, tail + 1))) return null;
+			} else if (range.compareAndSet(r, range(head + 1, tail + 1))) {
+				return take(head);
+			}
+			slots.set(tail & mask, null);
+		}
+	}
+
+	/**
+	 * 取出最新加入的元素（LIFO）。
+	 */
+	public E pollLast() {
+		while (true) {
+			long r = range.get();
+			int head = head(r), tail = tail(r);
+			if (head == tail) return null;
+			if (range.compareAndSet(r, range(head, tail - 1))) return take(tail - 1);
+		}
+	}
+
+	/**
+	 * 取出最先加入的元素（FIFO）。
+	 */
+	public E pollFirst() {
+		while (true) {
+			long r = range.get();
+			int head = head(r), tail = tail(r);
+			if (head == tail) return null;
+			if (range.compareAndSet(r, range(head + 1, tail))) return take(head);
+		}
+	}
+
+	/**
+	 * 取走已占有位置上的元素，元素在修改区间之前就已放入
+	 */
+	private E take(int seq) {
+		return slots.getAndSet(seq & mask, null);
+	}
+
+	/**
+	 * Returns the number of elements in this queue, including those being offered or polled concurrently.
+	 */
+	public int size() {
+		long r = range.get();
+		return tail(r) - head(r);
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+}
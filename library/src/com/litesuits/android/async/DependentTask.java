@@ -0,0 +1,28 @@
+package com.litesuits.android.async;
+
+import java.util.Map;
+
+/**
+ * {@link TaskExecutor.GraphTaskExecutor}中需要上游任务结果的任务。
+ * 在{@link #doInBackgroundSafely(Object...)}中通过{@link #getUpstreamResult(String)}读取依赖任务的结果。
+ */
+public abstract class DependentTask<Params, Progress, Result> extends SafeTask<Params, Progress, Result> {
+	/**
+	 * 任务名 -> 结果，在本任务启动前由执行器设置，此后只读
+	 */
+	private volatile Map<String, Object> upstream;
+
+	void setUpstream(Map<String, Object> upstream) {
+		this.upstream = upstream;
+	}
+
+	/**
+	 * @param name 依赖任务的名字
+	 * @return 该任务的结果；不是本任务的依赖，或不在{@link TaskExecutor.GraphTaskExecutor}中执行时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T getUpstreamResult(String name) {
+		Map<String, Object> map = upstream;
+		return map == null ? null : (T) map.get(name);
+	}
+}
@@ -0,0 +1,133 @@
+package com.litesuits.android.async;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link CachedTask}磁盘缓存的容量控制：按字节数和条目数限制，超出时按访问顺序（Lru）淘汰。
+ * <p>条目大小在写入时记录，读取时只在内存中更新访问顺序，读路径不增加任何I/O。
+ * 淘汰在后台线程执行；首次淘汰前列出一次{@link CacheStorage}中的条目，把此前写入的条目按写入顺序纳入统计。
+ */
+class DiskCacheBudget {
+	private static final String TAG = DiskCacheBudget.class.getSimpleName();
+
+	/**
+	 * 删除一个缓存条目
+	 */
+	interface Evictor {
+		void evict(String key);
+	}
+
+	private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	private final AtomicBoolean trimming = new AtomicBoolean();
+	private final Evictor evictor;
+	private long totalBytes;
+	private volatile long maxBytes;
+	private volatile int maxCount;
+	private boolean scanned;
+
+	DiskCacheBudget(Evictor evictor) {
+		this.evictor = evictor;
+	}
+
+	/**
+	 * @param maxBytes <=0 不限制字节数
+	 * @param maxCount <=0 不限制条目数
+	 */
+	void setBudget(long maxBytes, int maxCount) {
+		this.maxBytes = maxBytes;
+		this.maxCount = maxCount;
+	}
+
+	boolean isEnabled() {
+		return maxBytes > 0 || maxCount > 0;
+	}
+
+	void onWrite(String key, long bytes, CacheStorage storage) {
+		synchronized (this) {
+			Long old = sizes.put(key, bytes);
+			totalBytes += bytes - (old == null ? 0 : old);
+		}
+		trimIfNeeded(storage);
+	}
+
+	synchronized void onRead(String key) {
+		sizes.get(key);
+	}
+
+	synchronized void onRemove(String key) {
+		Long old = sizes.remove(key);
+		if (old != null) totalBytes -= old;
+	}
+
+	synchronized void clear() {
+		sizes.clear();
+		totalBytes = 0;
+	}
+
+	private synchronized boolean isOverBudget() {
+		long bytes = maxBytes;
+		int count = maxCount;
+		return (bytes > 0 && totalBytes > bytes) || (count > 0 && sizes.size() > count);
+	}
+
+	private void trimIfNeeded(final CacheStorage storage) {
+		if (!isEnabled()) return;
+		synchronized (this) {
+			if (scanned && !isOverBudget()) return;
+		}
+		if (!trimming.compareAndSet(false, true)) return;
+		TaskExecutor.start(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					trim(storage);
+				} finally {
+					trimming.set(false);
+				}
+			}
+		});
+	}
+
+	private void trim(CacheStorage storage) {
+		boolean needScan;
+		synchronized (this) {
+			needScan = !scanned;
+		}
+		if (needScan) scan(storage);
+		int evicted = 0;
+		while (true) {
+			String key;
+			synchronized (this) {
+				if (!isOverBudget()) break;
+				Iterator<Map.Entry<String, Long>> it = sizes.entrySet().iterator();
+				if (!it.hasNext()) break;
+				Map.Entry<String, Long> eldest = it.next();
+				key = eldest.getKey();
+				totalBytes -= eldest.getValue();
+				it.remove();
+			}
+			evictor.evict(key);
+			evicted++;
+		}
+		if (evicted > 0 && Log.isPrint) Log.i(TAG, "evict " + evicted + " cache entries");
+	}
+
+	/**
+	 * 把尚未统计的缓存条目按写入顺序（视为较早访问）排在已统计条目之前。
+	 */
+	private void scan(CacheStorage storage) {
+		LinkedHashMap<String, Long> entries = storage.entries();
+		synchronized (this) {
+			LinkedHashMap<String, Long> known = new LinkedHashMap<String, Long>(sizes);
+			sizes.clear();
+			for (Map.Entry<String, Long> entry : entries.entrySet()) {
+				if (known.containsKey(entry.getKey())) continue;
+				sizes.put(entry.getKey(), entry.getValue());
+				totalBytes += entry.getValue();
+			}
+			sizes.putAll(known);
+			scanned = true;
+		}
+	}
+}
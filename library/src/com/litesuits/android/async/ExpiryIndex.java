@@ -0,0 +1,306 @@
+package com.litesuits.android.async;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CachedTask}的缓存时间索引（key -> 缓存时间），持久化到缓存目录，进程重启后缓存依然有效。
+ * <p>文件格式：4字节魔数，随后是追加写入的记录 [UTF key][long time]，time < 0 表示删除。
+ * 启动时在后台线程加载，读写索引的任务在加载完成前会等待；废弃记录过多时重写文件。
+ * <p>调用者只修改内存中的索引，追加记录、重写和删除文件都在索引线程中进行，不阻塞调用者（通常是主线程）。
+ * 索引线程常驻，没有修改时阻塞等待，不会每次修改都新建线程。
+ */
+class ExpiryIndex {
+	private static final String TAG = ExpiryIndex.class.getSimpleName();
+	static final String FILE_NAME = ".index";
+	private static final int MAGIC = 0x4C435449;
+	private static final long REMOVED = -1;
+	/**
+	 * 文件记录数超过 有效条目*2 + 此值 时重写文件
+	 */
+	private static final int COMPACT_SLACK = 64;
+
+	private final File file;
+	private final ConcurrentHashMap<String, Long> map = new ConcurrentHashMap<String, Long>();
+	private final CountDownLatch loaded = new CountDownLatch(1);
+	/**
+	 * 以下两项只在索引线程中访问
+	 */
+	private DataOutputStream appender;
+	private int records;
+	/**
+	 * 等待写入文件的key，写入时取索引中的当前值，同一个key只写一次
+	 */
+	private final LinkedHashSet<String> pendingKeys = new LinkedHashSet<String>();
+	/**
+	 * 等待删除文件
+	 */
+	private boolean pendingClear;
+	/**
+	 * 索引线程正在加载或写入文件
+	 */
+	private boolean busy = true;
+	/**
+	 * 加载完成前删除的key，加载结果合并时剔除
+	 */
+	private final Set<String> removedBeforeLoad = new HashSet<String>();
+	/**
+	 * 每次清空加一，清空前开始的加载结果作废
+	 */
+	private int generation;
+
+	ExpiryIndex(File dir) {
+		this.file = new File(dir, FILE_NAME);
+		final int gen = generation;
+		// 用独立线程加载：等待索引的任务可能占满了线程池
+		Thread worker = new Thread("CachedTask Index") {
+			@Override
+			public void run() {
+				load(gen);
+				loop();
+			}
+		};
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	Long get(String key) {
+		awaitLoaded();
+		return map.get(key);
+	}
+
+	void put(String key, long time) {
+		awaitLoaded();
+		map.put(key, time);
+		schedule(key);
+	}
+
+	/**
+	 * 删除条目，不等待加载完成，也不等待写入文件。
+	 */
+	synchronized void remove(String key) {
+		if (loaded.getCount() > 0) removedBeforeLoad.add(key);
+		map.remove(key);
+		schedule(key);
+	}
+
+	/**
+	 * 清空索引，文件在索引线程中删除，不等待加载完成。
+	 */
+	synchronized void clear() {
+		generation++;
+		map.clear();
+		removedBeforeLoad.clear();
+		// 之前等待写入的key都已不存在，不必再写
+		pendingKeys.clear();
+		pendingClear = true;
+		notifyAll();
+	}
+
+	/**
+	 * 等待此前的修改全部写入文件
+	 *
+	 * @param unit if timeunit is null, see timeout as millisecond.
+	 * @return 超时返回false
+	 */
+	synchronized boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+		if (unit == null) unit = TimeUnit.MILLISECONDS;
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (busy || pendingClear || !pendingKeys.isEmpty()) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0) return false;
+			TimeUnit.NANOSECONDS.timedWait(this, left);
+		}
+		return true;
+	}
+
+	private synchronized void schedule(String key) {
+		pendingKeys.add(key);
+		notifyAll();
+	}
+
+	private void awaitLoaded() {
+		try {
+			loaded.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void load(int gen) {
+		Map<String, Long> temp = new ConcurrentHashMap<String, Long>();
+		int count = 0;
+		long validBytes = 0;
+		long fileLength = 0;
+		DataInputStream in = null;
+		try {
+			if (file.exists()) {
+				fileLength = file.length();
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				if (in.readInt() == MAGIC) {
+					validBytes = 4;
+					while (true) {
+						// 按写入时的字节数计算：writeUTF写的是modified UTF-8，非BMP字符和\u0000与标准UTF-8长度不同
+						int utfLength = in.readUnsignedShort();
+						byte[] utf = new byte[2 + utfLength];
+						utf[0] = (byte) (utfLength >>> 8);
+						utf[1] = (byte) utfLength;
+						in.readFully(utf, 2, utfLength);
+						String key = new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+						long time = in.readLong();
+						count++;
+						validBytes += 2 + utfLength + 8;
+						if (time < 0) temp.remove(key);
+						else temp.put(key, time);
+					}
+				}
+			}
+		} catch (EOFException e) {
+			// 读到结尾，末尾不完整的记录直接丢弃
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			if (in != null) try {
+				in.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		boolean rewrite = false;
+		synchronized (this) {
+			if (gen == generation) {
+				for (String key : removedBeforeLoad) {
+					temp.remove(key);
+				}
+				map.putAll(temp);
+				records = count;
+				// 文件末尾有残缺记录（如写入时进程被杀）时也要重写，否则之后追加的记录会错位
+				rewrite = validBytes != fileLength || records > map.size() * 2 + COMPACT_SLACK;
+			}
+			removedBeforeLoad.clear();
+		}
+		if (Log.isPrint) Log.i(TAG, "expiry index loaded: " + map.size() + " keys");
+		loaded.countDown();
+		// 已被清空时，文件由随后的删除处理
+		if (rewrite) compact();
+	}
+
+	/**
+	 * 在索引线程中执行：依次删除文件、写入等待中的key，没有等待的修改时阻塞
+	 */
+	private void loop() {
+		List<String> keys = new ArrayList<String>();
+		while (true) {
+			boolean clear;
+			synchronized (this) {
+				busy = false;
+				notifyAll();
+				while (!pendingClear && pendingKeys.isEmpty()) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// 索引线程不响应中断，继续等待
+					}
+				}
+				busy = true;
+				clear = pendingClear;
+				pendingClear = false;
+				keys.addAll(pendingKeys);
+				pendingKeys.clear();
+			}
+			if (clear) {
+				closeAppender();
+				file.delete();
+				records = 0;
+			}
+			if (!keys.isEmpty()) {
+				// 写入索引中的当前值：并发修改同一个key时，文件与索引最终一致
+				for (String key : keys) {
+					Long time = map.get(key);
+					append(key, time == null ? REMOVED : time);
+				}
+				flushAppender();
+				keys.clear();
+				if (records > map.size() * 2 + COMPACT_SLACK) compact();
+			}
+		}
+	}
+
+	private void append(String key, long time) {
+		try {
+			if (appender == null) {
+				File dir = file.getParentFile();
+				if (dir != null && !dir.exists()) dir.mkdirs();
+				boolean isNew = !file.exists() || file.length() == 0;
+				appender = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+				if (isNew) appender.writeInt(MAGIC);
+			}
+			appender.writeUTF(key);
+			appender.writeLong(time);
+			records++;
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeAppender();
+		}
+	}
+
+	private void flushAppender() {
+		if (appender == null) return;
+		try {
+			appender.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			closeAppender();
+		}
+	}
+
+	/**
+	 * 只保留有效条目，重写索引文件。
+	 */
+	private void compact() {
+		closeAppender();
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			out.writeInt(MAGIC);
+			int count = 0;
+			for (Map.Entry<String, Long> entry : map.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue());
+				count++;
+			}
+			out.close();
+			out = null;
+			if (tmp.renameTo(file)) records = count;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			if (out != null) try {
+				out.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			tmp.delete();
+		}
+	}
+
+	private void closeAppender() {
+		if (appender != null) {
+			try {
+				appender.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			appender = null;
+		}
+	}
+}
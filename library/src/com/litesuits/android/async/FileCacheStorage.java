@@ -0,0 +1,93 @@
+package com.litesuits.android.async;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * 每个key对应缓存目录下的一个文件。以"."开头的文件（如索引）不属于缓存数据。
+ */
+public class FileCacheStorage implements CacheStorage {
+	private final File dir;
+
+	public FileCacheStorage(File dir) {
+		this.dir = dir;
+	}
+
+	@Override
+	public byte[] read(String key) throws IOException {
+		File file = new File(dir, key);
+		if (!file.exists()) return null;
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			byte[] data = new byte[(int) fis.getChannel().size()];
+			new DataInputStream(fis).readFully(data);
+			return data;
+		} finally {
+			fis.close();
+		}
+	}
+
+	@Override
+	public void write(String key, byte[] data) throws IOException {
+		if (!dir.exists()) dir.mkdirs();
+		FileOutputStream fos = new FileOutputStream(new File(dir, key));
+		try {
+			fos.write(data);
+		} finally {
+			fos.close();
+		}
+	}
+
+	@Override
+	public void remove(String key) {
+		new File(dir, key).delete();
+	}
+
+	/**
+	 * 在后台删除缓存文件
+	 */
+	@Override
+	public void clear() {
+		final File[] fileList = dir.listFiles();
+		if (fileList != null) {
+			TaskExecutor.start(new Runnable() {
+				@Override
+				public void run() {
+					for (File f : fileList) {
+						if (isEntry(f)) f.delete();
+					}
+				}
+			});
+		}
+	}
+
+	@Override
+	public LinkedHashMap<String, Long> entries() {
+		File[] files = dir.listFiles();
+		LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>();
+		if (files == null) return entries;
+		List<File> list = new ArrayList<File>();
+		final Map<File, Long> modified = new HashMap<File, Long>();
+		for (File f : files) {
+			if (isEntry(f)) {
+				list.add(f);
+				modified.put(f, f.lastModified());
+			}
+		}
+		Collections.sort(list, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				long l = modified.get(lhs), r = modified.get(rhs);
+				return l < r ? -1 : (l == r ? 0 : 1);
+			}
+		});
+		for (File f : list) {
+			entries.put(f.getName(), f.length());
+		}
+		return entries;
+	}
+
+	private static boolean isEntry(File f) {
+		return f.isFile() && !f.getName().startsWith(".");
+	}
+}
@@ -0,0 +1,87 @@
+package com.litesuits.android.async;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按访问顺序淘汰的内存缓存，总权重超出上限时移除最久未访问的条目。
+ * <p>默认每个条目权重为1，即按条目个数限制；可通过{@link Weigher}按对象大小限制。
+ */
+public class LruMemoryCache<K, V> {
+	private final LinkedHashMap<K, V> map = new LinkedHashMap<K, V>(16, 0.75f, true);
+	private final int maxWeight;
+	private final Weigher<K, V> weigher;
+	private int weight;
+
+	/**
+	 * 计算缓存条目的权重，如对象占用的字节数
+	 */
+	public interface Weigher<K, V> {
+		int weigh(K key, V value);
+	}
+
+	/**
+	 * @param maxSize 最多缓存的条目数
+	 */
+	public LruMemoryCache(int maxSize) {
+		this(maxSize, null);
+	}
+
+	/**
+	 * @param maxWeight 总权重上限
+	 * @param weigher   if weigher is null, each entry weighs 1.
+	 */
+	public LruMemoryCache(int maxWeight, Weigher<K, V> weigher) {
+		if (maxWeight <= 0) throw new IllegalArgumentException("maxWeight must be > 0");
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	public synchronized V get(K key) {
+		return map.get(key);
+	}
+
+	public synchronized void put(K key, V value) {
+		if (key == null || value == null) return;
+		V old = map.put(key, value);
+		if (old != null) weight -= weigh(key, old);
+		weight += weigh(key, value);
+		trimToWeight(maxWeight);
+	}
+
+	public synchronized V remove(K key) {
+		V old = map.remove(key);
+		if (old != null) weight -= weigh(key, old);
+		return old;
+	}
+
+	public synchronized void clear() {
+		map.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	public synchronized int weight() {
+		return weight;
+	}
+
+	private int weigh(K key, V value) {
+		if (weigher == null) return 1;
+		int w = weigher.weigh(key, value);
+		if (w < 0) throw new IllegalStateException("Negative weight: " + key + "=" + value);
+		return w;
+	}
+
+	private void trimToWeight(int max) {
+		Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+		while (weight > max && it.hasNext()) {
+			Map.Entry<K, V> eldest = it.next();
+			weight -= weigh(eldest.getKey(), eldest.getValue());
+			it.remove();
+		}
+	}
+}
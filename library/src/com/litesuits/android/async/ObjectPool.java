@@ -0,0 +1,53 @@
+package com.litesuits.android.async;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁的定长对象池，用于复用高频创建的小对象（如结果信封、任务包装）。
+ * <p>池满时回收的对象直接丢弃，池空时{@link #acquire()}返回null，由调用者自行创建。
+ * 回收和取用本身都不分配内存。
+ */
+public class ObjectPool<T> {
+	private final AtomicReferenceArray<T> slots;
+	private final int size;
+
+	public ObjectPool(int size) {
+		if (size <= 0) throw new IllegalArgumentException("size must be > 0");
+		this.size = size;
+		this.slots = new AtomicReferenceArray<T>(size);
+	}
+
+	/**
+	 * 不同线程从不同的槽位开始查找，减少CAS冲突
+	 */
+	private int startIndex() {
+		return (int) (Thread.currentThread().getId() % size);
+	}
+
+	/**
+	 * @return 池中的对象，池空时返回null
+	 */
+	public T acquire() {
+		int start = startIndex();
+		for (int i = 0; i < size; i++) {
+			int index = (start + i) % size;
+			T t = slots.get(index);
+			if (t != null && slots.compareAndSet(index, t, null)) return t;
+		}
+		return null;
+	}
+
+	/**
+	 * 回收对象，调用者需保证回收后不再使用它。
+	 *
+	 * @return 池已满时返回false
+	 */
+	public boolean release(T t) {
+		int start = startIndex();
+		for (int i = 0; i < size; i++) {
+			int index = (start + i) % size;
+			if (slots.get(index) == null && slots.compareAndSet(index, null, t)) return true;
+		}
+		return false;
+	}
+}
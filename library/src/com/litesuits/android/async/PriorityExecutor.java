@@ -0,0 +1,228 @@
+package com.litesuits.android.async;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带优先级的并发控制器。
+ * <p>任务按{@link Priority}进入不同的队列，有空闲名额时优先调度高优先级的任务，
+ * 避免预加载之类的后台任务拖慢当前屏幕需要的任务。
+ * <p>为防止低优先级任务饿死，任务会随等待时间“老化”：等待超过 agingTime * 优先级差 后，即与高优先级任务同等对待。
+ * <p>用法：{@link AsyncTask#setDefaultExecutor(Executor)}设为默认执行器，或者通过
+ * {@link AsyncTask#executeOnExecutor(Executor, Object[])}单独指定；任务的优先级由{@link AsyncTask#setPriority(Priority)}设置。
+ */
+public class PriorityExecutor implements Executor {
+	private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+	private static final long DEFAULT_AGING_MILLIS = 1000;
+
+	public enum Priority {
+		/**
+		 * 当前界面急需的任务
+		 */
+		IMMEDIATE,
+		/**
+		 * 普通任务，默认
+		 */
+		NORMAL,
+		/**
+		 * 预加载等后台任务
+		 */
+		BACKGROUND;
+	}
+
+	/**
+	 * 提交的{@link Runnable}实现此接口时，执行器据此决定其优先级，否则视为{@link Priority#NORMAL}
+	 */
+	public interface Prioritized {
+		Priority getPriority();
+	}
+
+	private final Executor mExecutor;
+	private final int mMaxRunning;
+	private final long mAgingNanos;
+	private final AtomicInteger mRunning = new AtomicInteger();
+	private final Lane[] mLanes;
+
+	/**
+	 * 同时执行cpu个数的任务，任务交给{@link AsyncTask#mCachedSerialExecutor}执行。
+	 */
+	public PriorityExecutor() {
+		this(CPU_COUNT, AsyncTask.mCachedSerialExecutor, DEFAULT_AGING_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param maxRunning 同时执行的任务数上限
+	 * @param executor   实际执行任务的线程池
+	 * @param agingTime  老化时间，低一级的任务等待这么久后与高一级任务同等对待
+	 * @param unit       if timeunit is null, see agingTime as millisecond.
+	 */
+	public PriorityExecutor(int maxRunning, Executor executor, long agingTime, TimeUnit unit) {
+		if (maxRunning <= 0) throw new IllegalArgumentException("maxRunning must be > 0");
+		if (executor == null) throw new NullPointerException("executor == null");
+		if (unit == null) unit = TimeUnit.MILLISECONDS;
+		mMaxRunning = maxRunning;
+		mExecutor = executor;
+		mAgingNanos = unit.toNanos(agingTime);
+		Priority[] priorities = Priority.values();
+		mLanes = new Lane[priorities.length];
+		for (int i = 0; i < priorities.length; i++) {
+			mLanes[i] = new Lane();
+		}
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		Priority priority = null;
+		if (command instanceof Prioritized) priority = ((Prioritized) command).getPriority();
+		execute(command, priority);
+	}
+
+	/**
+	 * @param priority if priority is null, see it as {@link Priority#NORMAL}.
+	 */
+	public void execute(Runnable command, Priority priority) {
+		if (command == null) throw new NullPointerException("command == null");
+		if (priority == null) priority = Priority.NORMAL;
+		Lane lane = mLanes[priority.ordinal()];
+		lane.queue.offer(new Entry(command, lane, System.nanoTime()));
+		lane.queued.incrementAndGet();
+		next();
+	}
+
+	private void next() {
+		while (tryAcquire()) {
+			Entry entry = poll();
+			if (entry != null) {
+				entry.lane.onDequeued(System.nanoTime() - entry.enqueueTime);
+				try {
+					mExecutor.execute(entry);
+				} catch (RuntimeException e) {
+					// 线程池拒绝执行时归还名额，否则名额永久丢失
+					mRunning.decrementAndGet();
+					if (entry.command instanceof Future) ((Future<?>) entry.command).cancel(false);
+					throw e;
+				}
+				continue;
+			}
+			mRunning.decrementAndGet();
+			// 归还名额后再检查一次：避免此期间恰好有任务入队却无人调度
+			if (!hasQueued()) return;
+		}
+	}
+
+	private Entry poll() {
+		long now = System.nanoTime();
+		// 先看低优先级队列里是否有等待太久的任务
+		for (int i = mLanes.length - 1; i > 0; i--) {
+			Entry head = mLanes[i].queue.peek();
+			if (head != null && now - head.enqueueTime >= mAgingNanos * i) {
+				Entry entry = mLanes[i].queue.poll();
+				if (entry != null) return entry;
+			}
+		}
+		for (Lane lane : mLanes) {
+			Entry entry = lane.queue.poll();
+			if (entry != null) return entry;
+		}
+		return null;
+	}
+
+	private boolean hasQueued() {
+		for (Lane lane : mLanes) {
+			if (!lane.queue.isEmpty()) return true;
+		}
+		return false;
+	}
+
+	private boolean tryAcquire() {
+		for (;;) {
+			int running = mRunning.get();
+			if (running >= mMaxRunning) return false;
+			if (mRunning.compareAndSet(running, running + 1)) return true;
+		}
+	}
+
+	/*********************************** 统计 *******************************/
+
+	/**
+	 * @return 该优先级当前排队中的任务数
+	 */
+	public int getQueuedCount(Priority priority) {
+		return mLanes[priority.ordinal()].queued.get();
+	}
+
+	/**
+	 * @return 该优先级已开始执行的任务数
+	 */
+	public long getDequeuedCount(Priority priority) {
+		return mLanes[priority.ordinal()].dequeued.get();
+	}
+
+	/**
+	 * @return 该优先级任务的平均排队时间（毫秒）
+	 */
+	public long getAverageWaitMillis(Priority priority) {
+		Lane lane = mLanes[priority.ordinal()];
+		long count = lane.dequeued.get();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(lane.totalWaitNanos.get() / count);
+	}
+
+	/**
+	 * @return 该优先级任务的最长排队时间（毫秒）
+	 */
+	public long getMaxWaitMillis(Priority priority) {
+		return TimeUnit.NANOSECONDS.toMillis(mLanes[priority.ordinal()].maxWaitNanos.get());
+	}
+
+	public void resetMetrics() {
+		for (Lane lane : mLanes) {
+			lane.dequeued.set(0);
+			lane.totalWaitNanos.set(0);
+			lane.maxWaitNanos.set(0);
+		}
+	}
+
+	private static class Lane {
+		final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+		final AtomicInteger queued = new AtomicInteger();
+		final AtomicLong dequeued = new AtomicLong();
+		final AtomicLong totalWaitNanos = new AtomicLong();
+		final AtomicLong maxWaitNanos = new AtomicLong();
+
+		void onDequeued(long waitNanos) {
+			queued.decrementAndGet();
+			dequeued.incrementAndGet();
+			totalWaitNanos.addAndGet(waitNanos);
+			long max;
+			while (waitNanos > (max = maxWaitNanos.get())) {
+				if (maxWaitNanos.compareAndSet(max, waitNanos)) break;
+			}
+		}
+	}
+
+	private class Entry implements Runnable {
+		final Runnable command;
+		final Lane lane;
+		final long enqueueTime;
+
+		Entry(Runnable command, Lane lane, long enqueueTime) {
+			this.command = command;
+			this.lane = lane;
+			this.enqueueTime = enqueueTime;
+		}
+
+		@Override
+		public void run() {
+			try {
+				command.run();
+			} finally {
+				mRunning.decrementAndGet();
+				next();
+			}
+		}
+	}
+}
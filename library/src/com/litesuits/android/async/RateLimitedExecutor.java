@@ -0,0 +1,323 @@
+package com.litesuits.android.async;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限速执行器：按频率限制任务的提交，保护服务器不被过于频繁地调用。
+ * <ul>
+ * <li>1. 全局限速，以及按分组（如接口、域名）单独限速，任务需同时满足全局和所在分组的限制；</li>
+ * <li>2. 令牌桶（{@link Limit#tokenBucket(double, int)}）允许一定的突发，漏桶（{@link Limit#leakyBucket(double)}）以固定速率放行；</li>
+ * <li>3. 超出频率的任务按分组排队，或在队列满时丢弃；</li>
+ * <li>4. 排队的任务由共享的{@link TimerWheel}在下一个令牌可用时放行，不占用等待线程。</li>
+ * </ul>
+ * 放行的任务交给后端执行器执行，本类只控制提交频率，不限制并发数。
+ */
+public class RateLimitedExecutor implements Executor {
+	private static final String TAG = RateLimitedExecutor.class.getSimpleName();
+	/**
+	 * 不属于任何分组的任务
+	 */
+	private static final String NO_GROUP = "";
+
+	/**
+	 * 频率限制，{@link #tokenBucket(double, int)}或{@link #leakyBucket(double)}
+	 */
+	public static class Limit {
+		final double permitsPerSecond;
+		final double capacity;
+
+		private Limit(double permitsPerSecond, double capacity) {
+			if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be > 0");
+			this.permitsPerSecond = permitsPerSecond;
+			this.capacity = capacity;
+		}
+
+		/**
+		 * 令牌桶：令牌以固定速率生成，最多积累burst个，空闲后允许最多burst个任务立即执行。
+		 *
+		 * @param permitsPerSecond 每秒生成的令牌数
+		 * @param burst            >=1 桶容量
+		 */
+		public static Limit tokenBucket(double permitsPerSecond, int burst) {
+			if (burst < 1) throw new IllegalArgumentException("burst must be >= 1");
+			return new Limit(permitsPerSecond, burst);
+		}
+
+		/**
+		 * 漏桶：以固定速率放行，不允许突发。只容忍定时器精度（{@link TimerWheel#DEFAULT_TICK_MILLIS}）内的少量积压，
+		 * 使高频率时不因定时精度而降速。
+		 *
+		 * @param permitsPerSecond 每秒放行的任务数
+		 */
+		public static Limit leakyBucket(double permitsPerSecond) {
+			double slack = permitsPerSecond * TimerWheel.DEFAULT_TICK_MILLIS / 1000d;
+			return new Limit(permitsPerSecond, Math.max(1, slack));
+		}
+	}
+
+	/**
+	 * 限速的统计回调，在放行或丢弃任务的线程中调用，不要做耗时操作
+	 */
+	public interface ThrottleListener {
+		/**
+		 * 排队的任务被放行
+		 *
+		 * @param group      分组，没有分组时为null
+		 * @param delayNanos 因限速而等待的时间
+		 */
+		void onThrottled(String group, long delayNanos);
+
+		/**
+		 * 任务因队列已满被丢弃
+		 *
+		 * @param group 分组，没有分组时为null
+		 */
+		void onShed(String group, Runnable command);
+	}
+
+	private final Executor executor;
+	private final int maxQueued;
+	private final Bucket global;
+	private final HashMap<String, Bucket> groupBuckets = new HashMap<String, Bucket>();
+	/**
+	 * 分组 -> 排队的任务，只保留非空的队列
+	 */
+	private final LinkedHashMap<String, LinkedList<Pending>> queues = new LinkedHashMap<String, LinkedList<Pending>>();
+	private int queuedCount;
+	private long shedCount;
+	private volatile ThrottleListener listener;
+	private TimerWheel.Handle drainHandle;
+	private long drainAt;
+
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * 后端执行器为{@link AsyncTask#mCachedSerialExecutor}
+	 *
+	 * @param globalLimit 全局限速，null 表示只按分组限速
+	 * @param maxQueued   最多排队的任务数，超出时丢弃新任务；0 表示超出频率的任务直接丢弃
+	 */
+	public RateLimitedExecutor(Limit globalLimit, int maxQueued) {
+		this(globalLimit, maxQueued, AsyncTask.mCachedSerialExecutor);
+	}
+
+	/**
+	 * @param globalLimit 全局限速，null 表示只按分组限速
+	 * @param maxQueued   最多排队的任务数，超出时丢弃新任务；0 表示超出频率的任务直接丢弃
+	 * @param executor    放行的任务在此执行
+	 */
+	public RateLimitedExecutor(Limit globalLimit, int maxQueued, Executor executor) {
+		if (maxQueued < 0) throw new IllegalArgumentException("maxQueued must be >= 0");
+		if (executor == null) throw new NullPointerException("executor is null");
+		this.global = globalLimit == null ? null : new Bucket(globalLimit);
+		this.maxQueued = maxQueued;
+		this.executor = executor;
+	}
+
+	/**
+	 * 设置分组的限速，与全局限速同时生效。
+	 *
+	 * @param limit null 取消该分组的限速
+	 */
+	public synchronized void setGroupLimit(String group, Limit limit) {
+		if (group == null) throw new NullPointerException("group is null");
+		if (limit == null) groupBuckets.remove(group);
+		else groupBuckets.put(group, new Bucket(limit));
+	}
+
+	public void setThrottleListener(ThrottleListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 只受全局限速
+	 */
+	@Override
+	public void execute(Runnable command) {
+		execute(null, command);
+	}
+
+	/**
+	 * @param group 分组，null 表示只受全局限速
+	 */
+	public void execute(String group, Runnable command) {
+		if (command == null) throw new NullPointerException("command is null");
+		String key = group == null ? NO_GROUP : group;
+		boolean run = false;
+		boolean shed = false;
+		synchronized (this) {
+			// 同组已有排队的任务时不插队
+			if (!queues.containsKey(key) && tryAcquire(key, System.nanoTime())) {
+				run = true;
+			} else if (queuedCount >= maxQueued) {
+				shed = true;
+				shedCount++;
+			} else {
+				LinkedList<Pending> queue = queues.get(key);
+				if (queue == null) {
+					queue = new LinkedList<Pending>();
+					queues.put(key, queue);
+				}
+				queue.add(new Pending(command, System.nanoTime()));
+				queuedCount++;
+				scheduleDrain(System.nanoTime());
+			}
+		}
+		if (run) {
+			executor.execute(command);
+		} else if (shed) {
+			if (Log.isPrint) Log.w(TAG, "shed task, group: " + group);
+			// 被丢弃的Future取消掉，避免等待它的调用者永远阻塞；AsyncTask会因此回调onCancelled()
+			if (command instanceof Future) ((Future<?>) command).cancel(false);
+			ThrottleListener l = listener;
+			if (l != null) l.onShed(group, command);
+		}
+	}
+
+	/**
+	 * @return 正在排队的任务数
+	 */
+	public synchronized int getQueuedCount() {
+		return queuedCount;
+	}
+
+	/**
+	 * @return 累计丢弃的任务数
+	 */
+	public synchronized long getShedCount() {
+		return shedCount;
+	}
+
+	/*********************************** 放行 *******************************/
+
+	/**
+	 * 全局和分组都有令牌时同时扣除
+	 */
+	private boolean tryAcquire(String group, long now) {
+		Bucket groupBucket = groupBuckets.get(group);
+		if (global != null && !global.hasPermit(now)) return false;
+		if (groupBucket != null && !groupBucket.hasPermit(now)) return false;
+		if (global != null) global.take();
+		if (groupBucket != null) groupBucket.take();
+		return true;
+	}
+
+	/**
+	 * @return 该分组距下一个可用令牌的时间
+	 */
+	private long nanosUntilPermit(String group, long now) {
+		long wait = global == null ? 0 : global.nanosUntilPermit(now);
+		Bucket groupBucket = groupBuckets.get(group);
+		if (groupBucket != null) wait = Math.max(wait, groupBucket.nanosUntilPermit(now));
+		return wait;
+	}
+
+	/**
+	 * 在持有锁时调用：在最早可放行的时间安排一次放行，已有更早的安排时不重复安排
+	 */
+	private void scheduleDrain(long now) {
+		long wait = Long.MAX_VALUE;
+		for (String group : queues.keySet()) {
+			wait = Math.min(wait, nanosUntilPermit(group, now));
+		}
+		if (wait == Long.MAX_VALUE) return;
+		long at = now + wait;
+		if (drainHandle != null) {
+			if (drainAt <= at) return;
+			drainHandle.cancel();
+		}
+		drainAt = at;
+		drainHandle = TimerWheel.getDefault().schedule(drain, wait, TimeUnit.NANOSECONDS, TimerWheel.Dispatch.WORKER);
+	}
+
+	private void drain() {
+		ArrayList<Pending> ready = new ArrayList<Pending>();
+		long now = System.nanoTime();
+		synchronized (this) {
+			drainHandle = null;
+			ArrayList<String> served = new ArrayList<String>();
+			// 各分组轮流放行一个，放行过的分组移到队尾，避免排在前面的分组总是先拿到全局令牌
+			do {
+				served.clear();
+				Iterator<Map.Entry<String, LinkedList<Pending>>> it = queues.entrySet().iterator();
+				while (it.hasNext()) {
+					Map.Entry<String, LinkedList<Pending>> entry = it.next();
+					if (!tryAcquire(entry.getKey(), now)) continue;
+					Pending pending = entry.getValue().removeFirst();
+					pending.group = entry.getKey();
+					ready.add(pending);
+					queuedCount--;
+					if (entry.getValue().isEmpty()) it.remove();
+					else served.add(entry.getKey());
+				}
+				for (String group : served) {
+					queues.put(group, queues.remove(group));
+				}
+			} while (!served.isEmpty());
+			if (!queues.isEmpty()) scheduleDrain(now);
+		}
+		ThrottleListener l = listener;
+		for (Pending pending : ready) {
+			if (l != null) l.onThrottled(NO_GROUP.equals(pending.group) ? null : pending.group, now - pending.enqueueTime);
+			executor.execute(pending.command);
+		}
+	}
+
+	private static class Pending {
+		final Runnable command;
+		final long enqueueTime;
+		String group;
+
+		Pending(Runnable command, long enqueueTime) {
+			this.command = command;
+			this.enqueueTime = enqueueTime;
+		}
+	}
+
+	/**
+	 * 令牌桶，在持有执行器的锁时访问
+	 */
+	private static class Bucket {
+		private final double permitsPerNano;
+		private final double capacity;
+		private double tokens;
+		private long lastRefill;
+
+		Bucket(Limit limit) {
+			this.permitsPerNano = limit.permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+			this.capacity = limit.capacity;
+			this.tokens = limit.capacity;
+			this.lastRefill = System.nanoTime();
+		}
+
+		private void refill(long now) {
+			if (now > lastRefill) {
+				tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+				lastRefill = now;
+			}
+		}
+
+		boolean hasPermit(long now) {
+			refill(now);
+			return tokens >= 1;
+		}
+
+		void take() {
+			tokens -= 1;
+		}
+
+		long nanosUntilPermit(long now) {
+			refill(now);
+			if (tokens >= 1) return 0;
+			return (long) Math.ceil((1 - tokens) / permitsPerNano);
+		}
+	}
+}
@@ -15,6 +15,13 @@ public abstract class SafeTask<Params, Progress, Result> extends AsyncTask<Param
     private Exception cause;
     private boolean printStackTrace = true;
 
+    /**
+     * @return {@link #doInBackgroundSafely(Object...)}抛出的异常，没有时返回null
+     */
+    Exception getCause() {
+        return cause;
+    }
+
     @Override
     protected final void onPreExecute() {
         try {
@@ -0,0 +1,493 @@
+package com.litesuits.android.async;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分段追加写入的缓存存储：所有条目顺序追加到少量段文件中，内存中保存 key -> 位置 的索引。
+ * <p>适合key数量很多的场景：不再每个key一个文件，写入都是顺序追加，清空只需删除几个段文件。
+ * <ul>
+ * <li>记录格式：[UTF key][int length][data]，length = -1 表示删除；</li>
+ * <li>段文件名为".seg-N"，写满{@link #DEFAULT_SEGMENT_SIZE}后换新段，旧段不再写入；</li>
+ * <li>读取使用{@link FileChannel#read(ByteBuffer, long)}按位置读，多个线程可以同时读；</li>
+ * <li>旧段中被覆盖、删除的数据超过有效数据时，在后台把有效条目搬到当前段，然后删除旧段。</li>
+ * </ul>
+ * 首次读写时扫描段文件重建索引，末尾不完整的记录（如写入时进程被杀）会被截掉。
+ */
+public class SegmentCacheStorage implements CacheStorage {
+	private static final String TAG = SegmentCacheStorage.class.getSimpleName();
+	private static final String PREFIX = ".seg-";
+	public static final long DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+	private static final int TOMBSTONE = -1;
+
+	private final File dir;
+	private final long segmentSize;
+	private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+	private final ConcurrentHashMap<Integer, Segment> segments = new ConcurrentHashMap<Integer, Segment>();
+	/**
+	 * 追加写入、段的创建和统计都在此锁内进行
+	 */
+	private final Object appendLock = new Object();
+	/**
+	 * 读取持有读锁，关闭、删除段文件持有写锁
+	 */
+	private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+	private final AtomicBoolean compacting = new AtomicBoolean();
+	private volatile boolean loaded;
+	private Segment active;
+
+	public SegmentCacheStorage(File dir) {
+		this(dir, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param segmentSize 单个段文件的大小上限（字节）
+	 */
+	public SegmentCacheStorage(File dir, long segmentSize) {
+		if (segmentSize <= 0) throw new IllegalArgumentException("segmentSize must be > 0");
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+	}
+
+	@Override
+	public byte[] read(String key) throws IOException {
+		ensureLoaded();
+		while (true) {
+			Location loc = index.get(key);
+			if (loc == null) return null;
+			fileLock.readLock().lock();
+			try {
+				Segment seg = segments.get(loc.segment);
+				// 段已被整理删除，条目已搬到新的位置
+				if (seg == null) continue;
+				byte[] data = new byte[loc.length];
+				seg.readFully(ByteBuffer.wrap(data), loc.dataOffset());
+				return data;
+			} finally {
+				fileLock.readLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public void write(String key, byte[] data) throws IOException {
+		ensureLoaded();
+		synchronized (appendLock) {
+			Location loc = append(key, data);
+			discard(index.put(key, loc));
+		}
+		compactIfNeeded();
+	}
+
+	@Override
+	public void remove(String key) {
+		try {
+			ensureLoaded();
+			synchronized (appendLock) {
+				Location old = index.remove(key);
+				if (old == null) return;
+				discard(old);
+				discard(append(key, null));
+			}
+			compactIfNeeded();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 关闭并删除所有段文件，之后的写入从新的段开始。
+	 */
+	@Override
+	public void clear() {
+		synchronized (appendLock) {
+			fileLock.writeLock().lock();
+			try {
+				index.clear();
+				for (Segment seg : segments.values()) {
+					seg.close();
+				}
+				segments.clear();
+				active = null;
+				File[] files = dir.listFiles();
+				if (files != null) {
+					for (File f : files) {
+						if (parseId(f.getName()) >= 0) f.delete();
+					}
+				}
+				loaded = true;
+			} finally {
+				fileLock.writeLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public LinkedHashMap<String, Long> entries() {
+		LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>();
+		try {
+			ensureLoaded();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return entries;
+		}
+		List<Map.Entry<String, Location>> list = new ArrayList<Map.Entry<String, Location>>(index.entrySet());
+		Collections.sort(list, new Comparator<Map.Entry<String, Location>>() {
+			@Override
+			public int compare(Map.Entry<String, Location> lhs, Map.Entry<String, Location> rhs) {
+				Location l = lhs.getValue(), r = rhs.getValue();
+				if (l.segment != r.segment) return l.segment < r.segment ? -1 : 1;
+				return l.offset < r.offset ? -1 : (l.offset == r.offset ? 0 : 1);
+			}
+		});
+		for (Map.Entry<String, Location> entry : list) {
+			entries.put(entry.getKey(), (long) entry.getValue().length);
+		}
+		return entries;
+	}
+
+	/*********************************** 写入 *******************************/
+
+	/**
+	 * 在appendLock内调用
+	 *
+	 * @param data null 表示写入删除记录
+	 */
+	private Location append(String key, byte[] data) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(data == null ? 64 : data.length + 64);
+		DataOutputStream out = new DataOutputStream(bos);
+		out.writeUTF(key);
+		out.writeInt(data == null ? TOMBSTONE : data.length);
+		int headerLength = out.size();
+		if (data != null) out.write(data);
+		out.flush();
+		byte[] record = bos.toByteArray();
+
+		if (active == null || (active.length > 0 && active.length + record.length > segmentSize)) {
+			int id = active == null ? 0 : active.id + 1;
+			for (Integer existing : segments.keySet()) {
+				if (existing >= id) id = existing + 1;
+			}
+			active = new Segment(id, new File(dir, PREFIX + id));
+			segments.put(id, active);
+		}
+		long offset = active.length;
+		active.append(record);
+		Location loc = new Location(active.id, offset, headerLength, data == null ? TOMBSTONE : data.length);
+		active.live += loc.size();
+		return loc;
+	}
+
+	/**
+	 * 把一条记录记为废弃，在appendLock内调用
+	 */
+	private void discard(Location loc) {
+		if (loc == null) return;
+		Segment seg = segments.get(loc.segment);
+		if (seg != null) {
+			seg.live -= loc.size();
+			seg.dead += loc.size();
+		}
+	}
+
+	/*********************************** 加载 *******************************/
+
+	private void ensureLoaded() throws IOException {
+		if (loaded) return;
+		synchronized (appendLock) {
+			if (loaded) return;
+			if (!dir.exists()) dir.mkdirs();
+			try {
+				load();
+			} catch (IOException e) {
+				// 加载失败时不保留部分结果，下次读写时重试
+				for (Segment seg : segments.values()) {
+					seg.close();
+				}
+				segments.clear();
+				index.clear();
+				active = null;
+				throw e;
+			}
+			loaded = true;
+			if (Log.isPrint) Log.i(TAG, "segments loaded: " + segments.size() + " segments, " + index.size() + " keys");
+		}
+	}
+
+	private void load() throws IOException {
+		for (int id : sortedIds(dir.listFiles())) {
+			Segment seg = new Segment(id, new File(dir, PREFIX + id));
+			segments.put(id, seg);
+			active = seg;
+			scan(seg, new RecordVisitor() {
+				@Override
+				public void visit(String key, Location loc) {
+					if (loc.length == TOMBSTONE) {
+						discard(index.remove(key));
+						// 删除记录本身也是废弃数据
+						segments.get(loc.segment).dead += loc.size();
+					} else {
+						segments.get(loc.segment).live += loc.size();
+						discard(index.put(key, loc));
+					}
+				}
+			});
+		}
+	}
+
+	private interface RecordVisitor {
+		void visit(String key, Location loc) throws IOException;
+	}
+
+	/**
+	 * 顺序读取段中的所有记录，截掉末尾不完整的记录
+	 */
+	private static void scan(Segment seg, RecordVisitor visitor) throws IOException {
+		long fileLength = seg.raf.length();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(seg.file)));
+		long offset = 0;
+		try {
+			while (offset < fileLength) {
+				// 按写入时的字节数计算偏移：writeUTF写的是modified UTF-8，非BMP字符和\u0000与标准UTF-8长度不同
+				int utfLength = in.readUnsignedShort();
+				byte[] utf = new byte[2 + utfLength];
+				utf[0] = (byte) (utfLength >>> 8);
+				utf[1] = (byte) utfLength;
+				in.readFully(utf, 2, utfLength);
+				String key = new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+				int length = in.readInt();
+				int headerLength = 2 + utfLength + 4;
+				Location loc = new Location(seg.id, offset, headerLength, length);
+				if (offset + loc.size() > fileLength) break;
+				if (length > 0) in.skipBytes(length);
+				visitor.visit(key, loc);
+				offset += loc.size();
+			}
+		} catch (EOFException e) {
+			// 末尾不完整的记录
+		} finally {
+			in.close();
+		}
+		if (offset < fileLength) {
+			if (Log.isPrint) Log.w(TAG, seg.file.getName() + " truncate torn tail at " + offset);
+			seg.raf.setLength(offset);
+		}
+		seg.length = offset;
+	}
+
+	private static List<Integer> sortedIds(File[] files) {
+		List<Integer> ids = new ArrayList<Integer>();
+		if (files != null) {
+			for (File f : files) {
+				int id = parseId(f.getName());
+				if (id >= 0) ids.add(id);
+			}
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private static int parseId(String name) {
+		if (!name.startsWith(PREFIX)) return -1;
+		try {
+			return Integer.parseInt(name.substring(PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/*********************************** 整理 *******************************/
+
+	private void compactIfNeeded() {
+		synchronized (appendLock) {
+			if (findCompactable() == null) return;
+		}
+		if (!compacting.compareAndSet(false, true)) return;
+		TaskExecutor.start(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Segment seg;
+					while (true) {
+						synchronized (appendLock) {
+							seg = findCompactable();
+						}
+						if (seg == null) break;
+						compact(seg);
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				} finally {
+					compacting.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return 废弃数据多于有效数据的旧段（不包括正在写入的段）
+	 */
+	private Segment findCompactable() {
+		for (Segment seg : segments.values()) {
+			if (seg != active && seg.dead > seg.live) return seg;
+		}
+		return null;
+	}
+
+	/**
+	 * 把段中的有效条目搬到当前段，然后删除它。
+	 * 它之前还有更早的段时，删除记录也要搬过去，否则重启后更早段中的旧数据会重新生效。
+	 */
+	private void compact(final Segment seg) throws IOException {
+		final boolean hasOlder = hasOlderSegment(seg.id);
+		final int[] moved = new int[1];
+		try {
+			scan(seg, new RecordVisitor() {
+				@Override
+				public void visit(String key, Location loc) throws IOException {
+					if (loc.length == TOMBSTONE) {
+						if (!hasOlder) return;
+						synchronized (appendLock) {
+							if (isRemoved(seg) || index.containsKey(key)) return;
+							discard(append(key, null));
+						}
+						return;
+					}
+					if (!loc.equals(index.get(key))) return;
+					byte[] data = new byte[loc.length];
+					fileLock.readLock().lock();
+					try {
+						// 段已被clear()关闭
+						if (isRemoved(seg)) return;
+						seg.readFully(ByteBuffer.wrap(data), loc.dataOffset());
+					} finally {
+						fileLock.readLock().unlock();
+					}
+					synchronized (appendLock) {
+						// 搬运期间条目可能被覆盖或删除
+						if (!loc.equals(index.get(key))) return;
+						index.put(key, append(key, data));
+						moved[0]++;
+					}
+				}
+			});
+		} catch (IOException e) {
+			// 扫描期间段已被clear()关闭、删除
+			if (isRemoved(seg)) return;
+			throw e;
+		}
+		synchronized (appendLock) {
+			fileLock.writeLock().lock();
+			try {
+				// 搬运期间已被clear()删除
+				if (isRemoved(seg)) return;
+				segments.remove(seg.id);
+				seg.close();
+				seg.file.delete();
+			} finally {
+				fileLock.writeLock().unlock();
+			}
+		}
+		if (Log.isPrint) Log.i(TAG, "compact " + seg.file.getName() + ", move " + moved[0] + " entries");
+	}
+
+	private boolean isRemoved(Segment seg) {
+		return segments.get(seg.id) != seg;
+	}
+
+	private boolean hasOlderSegment(int id) {
+		for (Integer existing : segments.keySet()) {
+			if (existing < id) return true;
+		}
+		return false;
+	}
+
+	/*********************************** 数据结构 *******************************/
+
+	private static class Segment {
+		final int id;
+		final File file;
+		final RandomAccessFile raf;
+		final FileChannel channel;
+		/**
+		 * 文件长度、有效字节数、废弃字节数，在appendLock内修改
+		 */
+		long length;
+		long live;
+		long dead;
+
+		Segment(int id, File file) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.raf = new RandomAccessFile(file, "rw");
+			this.channel = raf.getChannel();
+			this.length = raf.length();
+		}
+
+		void append(byte[] record) throws IOException {
+			raf.seek(length);
+			raf.write(record);
+			length += record.length;
+		}
+
+		/**
+		 * 按位置读取，不改变文件指针，可与追加写入同时进行
+		 */
+		void readFully(ByteBuffer buffer, long position) throws IOException {
+			while (buffer.hasRemaining()) {
+				int n = channel.read(buffer, position + buffer.position());
+				if (n < 0) throw new EOFException(file.getName() + " truncated");
+			}
+		}
+
+		void close() {
+			try {
+				raf.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static class Location {
+		final int segment;
+		final long offset;
+		final int headerLength;
+		final int length;
+
+		Location(int segment, long offset, int headerLength, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.headerLength = headerLength;
+			this.length = length;
+		}
+
+		long dataOffset() {
+			return offset + headerLength;
+		}
+
+		/**
+		 * @return 整条记录占用的字节数
+		 */
+		long size() {
+			return headerLength + (length > 0 ? length : 0);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Location)) return false;
+			Location other = (Location) o;
+			return segment == other.segment && offset == other.offset;
+		}
+
+		@Override
+		public int hashCode() {
+			return segment * 31 + (int) (offset ^ (offset >>> 32));
+		}
+	}
+}
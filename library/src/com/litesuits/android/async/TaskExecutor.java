@@ -15,15 +15,20 @@
  */
 package com.litesuits.android.async;
 
-import android.os.Handler;
-import android.os.Looper;
-
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * the {@link TaskExecutor} can execute task in many ways.
@@ -31,7 +36,9 @@ import java.util.concurrent.TimeUnit;
  * <li>1. OrderedTask, 有序的执行一些列任务。
  * <li>2. CyclicBarrierTask, 并发的执行一系列任务，且会在所有任务执行完成时集中到一个关卡点（执行特定的函数）。
  * <li>3. Delayed Task, 延时任务。
- * <li>4. Timer Runnable, 定时任务。
+ * <li>4. Timer Runnable, 定时任务，延时和定时任务共用一个{@link TimerWheel}线程。
+ * <li>5. GraphTask, 按依赖关系（有向无环图）并发执行一系列任务。
+ * <li>6. Parallel map/forEach, 把列表分块并行处理，按顺序回调结果。
  * </ul>
  *
  * @author MaTianyu
@@ -48,6 +55,16 @@ public class TaskExecutor {
         AsyncTask.execute(run);
     }
 
+    /**
+     * 按优先级开子线程，默认执行器为{@link PriorityExecutor}时优先级生效。
+     *
+     * @param run
+     * @param priority
+     */
+    public static void start(Runnable run, PriorityExecutor.Priority priority) {
+        AsyncTask.execute(run, priority);
+    }
+
     /**
      * 开子线程，并发超出数量限制时允许丢失任务。
      *
@@ -76,21 +93,70 @@ public class TaskExecutor {
     }
 
     /**
-     * 延时异步任务
+     * 有依赖关系的异步任务执行器
+     *
+     * @return
+     */
+    public static GraphTaskExecutor newGraphExecutor() {
+        return new GraphTaskExecutor();
+    }
+
+    /**
+     * 收集结果的关卡异步任务执行器
+     *
+     * @return
+     */
+    public static <Result> ResultBarrierExecutor<Result> newResultBarrierExecutor() {
+        return new ResultBarrierExecutor<Result>();
+    }
+
+    /**
+     * 并行map：把列表分块交给线程池处理，所有元素处理完后按原顺序在主线程回调一次。
+     * <p>分块大小自适应：每次领取剩余元素的 1/(2*并行数)，开始时块大、领取次数少，接近结束时块小、各线程负载均衡。
+     * 任一元素抛出异常后不再领取新的分块，结果中未处理的位置为null。
+     *
+     * @param items    要处理的元素
+     * @param mapper   在子线程执行
+     * @param callback 在主线程回调
+     */
+    public static <T, R> void parallelMap(List<? extends T> items, Mapper<? super T, ? extends R> mapper,
+                                          MapCallback<R> callback) {
+        new ParallelJob<T, R>(items, mapper, callback).start();
+    }
+
+    /**
+     * 并行forEach，分块方式同{@link #parallelMap(List, Mapper, MapCallback)}。
+     *
+     * @param items    要处理的元素
+     * @param action   在子线程执行
+     * @param callback 在主线程回调，结果全为null，可为null
+     */
+    public static <T> void parallelForEach(List<? extends T> items, final Action<? super T> action,
+                                           MapCallback<Void> callback) {
+        parallelMap(items, new Mapper<T, Void>() {
+            @Override
+            public Void map(T item) throws Exception {
+                action.run(item);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * 延时异步任务，由共享的{@link TimerWheel}计时，到期后在主线程启动任务。
      *
      * @param task
      * @param time
-     * @param unit
+     * @param unit if timeunit is null, see time as millisecond.
+     * @return 可用于取消尚未启动的任务
      */
-    public static void startDelayedTask(final AsyncTask<?, ?, ?> task, long time, TimeUnit unit) {
-        long delay = time;
-        if (unit != null) delay = unit.toMillis(time);
-        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+    public static TimerWheel.Handle startDelayedTask(final AsyncTask<?, ?, ?> task, long time, TimeUnit unit) {
+        return TimerWheel.getDefault().schedule(new Runnable() {
             @Override
             public void run() {
                 task.execute();
             }
-        }, delay);
+        }, time, unit, TimerWheel.Dispatch.MAIN);
     }
 
     /**
@@ -100,7 +166,9 @@ public class TaskExecutor {
      * @param delay  >0 延迟时间
      * @param period >0 心跳间隔时间
      * @return
+     * @deprecated 每次调用都会创建一个{@link Timer}线程，请使用{@link #scheduleAtFixedRate(Runnable, long, long, TimeUnit)}
      */
+    @Deprecated
     public static Timer startTimerTask(final Runnable run, long delay, long period) {
         Timer timer = new Timer();
         TimerTask timerTask = new TimerTask() {
@@ -113,6 +181,172 @@ public class TaskExecutor {
         return timer;
     }
 
+    /**
+     * 按固定频率执行定时任务，由共享的{@link TimerWheel}计时，在子线程执行。
+     *
+     * @param run
+     * @param delay  首次执行的延迟时间
+     * @param period >0 心跳间隔时间
+     * @param unit   if timeunit is null, see delay and period as millisecond.
+     * @return 调用{@link TimerWheel.Handle#cancel()}停止
+     */
+    public static TimerWheel.Handle scheduleAtFixedRate(Runnable run, long delay, long period, TimeUnit unit) {
+        return TimerWheel.getDefault().scheduleAtFixedRate(run, delay, period, unit, TimerWheel.Dispatch.WORKER);
+    }
+
+    /**
+     * 上一次执行结束后间隔固定时间再执行，由共享的{@link TimerWheel}计时，在子线程执行。
+     *
+     * @param run
+     * @param delay    首次执行的延迟时间
+     * @param interval >0 两次执行之间的间隔
+     * @param unit     if timeunit is null, see delay and interval as millisecond.
+     * @return 调用{@link TimerWheel.Handle#cancel()}停止
+     */
+    public static TimerWheel.Handle scheduleWithFixedDelay(Runnable run, long delay, long interval, TimeUnit unit) {
+        return TimerWheel.getDefault().scheduleWithFixedDelay(run, delay, interval, unit, TimerWheel.Dispatch.WORKER);
+    }
+
+    public interface Mapper<T, R> {
+        /**
+         * Child Thread
+         */
+        R map(T item) throws Exception;
+    }
+
+    public interface Action<T> {
+        /**
+         * Child Thread
+         */
+        void run(T item) throws Exception;
+    }
+
+    /**
+     * {@link #parallelMap(List, Mapper, MapCallback)}的回调，都在主线程
+     */
+    public static abstract class MapCallback<R> {
+        /**
+         * 一个分块处理完毕，用于增量显示。分块之间可能乱序，from 为该块在原列表中的起始位置。
+         */
+        protected void onChunk(int from, List<R> chunk) {}
+
+        /**
+         * @param results 按原顺序排列的结果
+         * @param e       第一个抛出的异常，没有时为null；抛出的是{@link Error}时包装为{@link ExecutionException}
+         */
+        protected abstract void onFinished(List<R> results, Exception e);
+    }
+
+    /**
+     * 一次并行map：多个worker通过同一个游标领取分块，结果写入各自的位置，最后一个结束的worker通知主线程。
+     */
+    private static class ParallelJob<T, R> {
+        private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+        private final Object[] input;
+        private final Object[] output;
+        private final Mapper<? super T, ? extends R> mapper;
+        private final MapCallback<R> callback;
+        private final int parallelism;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final AtomicInteger runningWorkers = new AtomicInteger();
+        /**
+         * 只保留第一个异常
+         */
+        private final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+        ParallelJob(List<? extends T> items, Mapper<? super T, ? extends R> mapper, MapCallback<R> callback) {
+            if (items == null || mapper == null || callback == null) throw new NullPointerException();
+            this.input = items.toArray();
+            this.output = new Object[input.length];
+            this.mapper = mapper;
+            this.callback = callback;
+            this.parallelism = Math.max(1, Math.min(CPU_COUNT, input.length));
+        }
+
+        void start() {
+            if (input.length == 0) {
+                postFinished();
+                return;
+            }
+            runningWorkers.set(parallelism);
+            for (int i = 0; i < parallelism; i++) {
+                TaskExecutor.start(new Runnable() {
+                    @Override
+                    public void run() {
+                        work();
+                    }
+                });
+            }
+        }
+
+        private void work() {
+            int[] chunk = new int[2];
+            try {
+                while (error.get() == null && claim(chunk)) {
+                    final int from = chunk[0], to = chunk[1];
+                    try {
+                        for (int i = from; i < to; i++) {
+                            output[i] = map(i);
+                        }
+                    } catch (Exception e) {
+                        error.compareAndSet(null, e);
+                        break;
+                    } catch (Error e) {
+                        // 同样通知主线程结束，再在本线程抛出
+                        error.compareAndSet(null, new ExecutionException(e));
+                        throw e;
+                    }
+                    AsyncTask.runOnMainThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onChunk(from, results().subList(from, to));
+                        }
+                    });
+                }
+            } finally {
+                // 最后一个结束的worker通知主线程，异常退出时也不能漏掉
+                if (runningWorkers.decrementAndGet() == 0) postFinished();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private R map(int index) throws Exception {
+            return mapper.map((T) input[index]);
+        }
+
+        /**
+         * 领取 [from, to)，块大小为剩余元素的 1/(2*并行数)，至少为1
+         */
+        private boolean claim(int[] chunk) {
+            int length = input.length;
+            while (true) {
+                int from = cursor.get();
+                if (from >= length) return false;
+                int size = Math.max(1, (length - from) / (parallelism * 2));
+                int to = Math.min(length, from + size);
+                if (cursor.compareAndSet(from, to)) {
+                    chunk[0] = from;
+                    chunk[1] = to;
+                    return true;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<R> results() {
+            return (List<R>) Arrays.asList(output);
+        }
+
+        private void postFinished() {
+            AsyncTask.runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onFinished(results(), error.get());
+                }
+            });
+        }
+    }
+
     public static class OrderedTaskExecutor {
         LinkedList<AsyncTask<?, ?, ?>> taskList = new LinkedList<AsyncTask<?, ?, ?>>();
         private transient boolean isRunning = false;
@@ -166,91 +400,546 @@ public class TaskExecutor {
         }
     }
 
-    public static class CyclicBarrierExecutor {
-        ArrayList<AsyncTask<?, ?, ?>> taskList = new ArrayList<AsyncTask<?, ?, ?>>();
+    /**
+     * 有依赖关系的任务执行器：每个任务声明依赖的任务，依赖全部成功后立即启动，没有依赖关系的任务并发执行。
+     * <p>如 A、B 并发，C 依赖 A，D 依赖 B 和 C：
+     * <pre>
+     * TaskExecutor.newGraphExecutor()
+     *         .put("A", a).put("B", b)
+     *         .put("C", c, "A")
+     *         .put("D", d, "B", "C")
+     *         .start(endOnUiThread);
+     * </pre>
+     * {@link DependentTask}可以读取依赖任务的结果。依赖的任务失败（{@link SafeTask}抛出异常）或被取消时，
+     * 下游任务不再执行，视为跳过。任务完成的回调都在主线程，启动也在主线程。
+     */
+    public static class GraphTaskExecutor {
+        private static final String TAG = GraphTaskExecutor.class.getSimpleName();
+        private final LinkedHashMap<String, Node> nodes = new LinkedHashMap<String, Node>();
         private transient boolean isRunning = false;
+        /**
+         * 以下只在主线程访问
+         */
+        private int unresolved;
+        private boolean ended;
+        private Runnable endAction;
 
-        public CyclicBarrierExecutor put(AsyncTask<?, ?, ?> task) {
-            if (task != null) taskList.add(task);
+        private static class Node {
+            final String name;
+            final AsyncTask<?, ?, ?> task;
+            final String[] dependencies;
+            final ArrayList<Node> dependents = new ArrayList<Node>();
+            int waiting;
+            boolean succeeded;
+            boolean resolved;
+            Object result;
+
+            Node(String name, AsyncTask<?, ?, ?> task, String[] dependencies) {
+                this.name = name;
+                this.task = task;
+                this.dependencies = dependencies;
+            }
+        }
+
+        /**
+         * @param name         任务名，不能重复
+         * @param task         任务
+         * @param dependencies 依赖的任务名，可以在之后再put
+         */
+        public GraphTaskExecutor put(String name, AsyncTask<?, ?, ?> task, String... dependencies) {
+            if (name == null || task == null) throw new NullPointerException("name and task must not be null");
+            if (isRunning) throw new IllegalStateException("GraphTaskExecutor has started");
+            if (nodes.containsKey(name)) throw new IllegalArgumentException("Duplicate task name: " + name);
+            nodes.put(name, new Node(name, task, dependencies == null ? new String[0] : dependencies));
             return this;
         }
 
-        public void start(final AsyncTask<?, ?, ?> finishTask) {
-            start(finishTask, 0, null);
+        public void start() {
+            start(null);
         }
 
-        @SuppressWarnings("unchecked")
-        public void start(final AsyncTask<?, ?, ?> endOnUiTask, final long time, final TimeUnit unit) {
-            if (isRunning) throw new RuntimeException("CyclicBarrierExecutor only can start once.");
+        /**
+         * 检查依赖关系后启动所有没有依赖的任务。
+         *
+         * @param endOnUiThread 所有任务完成或被跳过时在主线程执行，可为null
+         * @throws IllegalArgumentException 依赖了不存在的任务，或依赖关系有环
+         */
+        public void start(Runnable endOnUiThread) {
+            if (isRunning) throw new RuntimeException("GraphTaskExecutor only can start once.");
+            link();
             isRunning = true;
-            final CountDownLatch latch = new CountDownLatch(taskList.size());
-            new SimpleTask<Boolean>() {
+            endAction = endOnUiThread;
+            unresolved = nodes.size();
+            if (unresolved == 0) {
+                if (endAction != null) AsyncTask.runOnMainThread(endAction);
+                return;
+            }
+            ArrayList<Node> ready = new ArrayList<Node>();
+            for (Node node : nodes.values()) {
+                if (node.waiting == 0) ready.add(node);
+            }
+            for (Node node : ready) {
+                launch(node);
+            }
+        }
 
-                @Override
-                protected Boolean doInBackground() {
-                    try {
-                        if (unit == null) latch.await();
-                        else latch.await(time, unit);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    return true;
-                }
+        /**
+         * @return 任务的结果，未完成或失败时返回null
+         */
+        public Object getResult(String name) {
+            Node node = nodes.get(name);
+            return node == null ? null : node.result;
+        }
 
-                @Override
-                protected void onPostExecute(Boolean aBoolean) {
-                    endOnUiTask.execute();
-                }
-            }.execute();
-            startInternal(latch);
+        /**
+         * @return 任务已成功完成；失败、取消、被跳过或未完成时返回false
+         */
+        public boolean isSucceeded(String name) {
+            Node node = nodes.get(name);
+            return node != null && node.succeeded;
         }
 
-        public void start(Runnable endOnUiThread) {
-            start(endOnUiThread, 0, null);
+        /**
+         * 建立依赖关系，用Kahn算法（逐个移除入度为0的节点）检查是否有环
+         */
+        private void link() {
+            for (Node node : nodes.values()) {
+                node.waiting = 0;
+                node.dependents.clear();
+            }
+            for (Node node : nodes.values()) {
+                for (String dependency : node.dependencies) {
+                    Node upstream = nodes.get(dependency);
+                    if (upstream == null) {
+                        throw new IllegalArgumentException(node.name + " depends on unknown task: " + dependency);
+                    }
+                    upstream.dependents.add(node);
+                    node.waiting++;
+                }
+            }
+            HashMap<Node, Integer> inDegree = new HashMap<Node, Integer>();
+            LinkedList<Node> queue = new LinkedList<Node>();
+            for (Node node : nodes.values()) {
+                inDegree.put(node, node.waiting);
+                if (node.waiting == 0) queue.add(node);
+            }
+            int visited = 0;
+            while (!queue.isEmpty()) {
+                Node node = queue.removeFirst();
+                visited++;
+                for (Node dependent : node.dependents) {
+                    int left = inDegree.get(dependent) - 1;
+                    inDegree.put(dependent, left);
+                    if (left == 0) queue.add(dependent);
+                }
+            }
+            if (visited < nodes.size()) {
+                ArrayList<String> cycle = new ArrayList<String>();
+                for (Map.Entry<Node, Integer> entry : inDegree.entrySet()) {
+                    if (entry.getValue() > 0) cycle.add(entry.getKey().name);
+                }
+                throw new IllegalArgumentException("Dependency cycle among tasks: " + cycle);
+            }
         }
 
-        public void start(final Runnable endOnUiThread, final long time, final TimeUnit unit) {
-            if (isRunning) throw new RuntimeException("CyclicBarrierExecutor only can start once.");
-            isRunning = true;
-            final CountDownLatch latch = new CountDownLatch(taskList.size());
-            new SimpleTask<Boolean>() {
+        private void launch(final Node node) {
+            if (node.task instanceof DependentTask) {
+                HashMap<String, Object> upstream = new HashMap<String, Object>();
+                for (String dependency : node.dependencies) {
+                    upstream.put(dependency, nodes.get(dependency).result);
+                }
+                ((DependentTask<?, ?, ?>) node.task).setUpstream(upstream);
+            }
+            node.task.setFinishedListener(new AsyncTask.ResultListener() {
+                @Override
+                public void onResult(Object result) {
+                    node.result = result;
+                }
 
                 @Override
-                protected Boolean doInBackground() {
-                    try {
-                        if (unit == null) latch.await();
-                        else latch.await(time, unit);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    return true;
+                public void onPostExecute() {
+                    boolean failed = node.task instanceof SafeTask && ((SafeTask<?, ?, ?>) node.task).getCause() != null;
+                    if (failed) node.result = null;
+                    resolve(node, !failed);
                 }
 
                 @Override
-                protected void onPostExecute(Boolean aBoolean) {
-                    endOnUiThread.run();
+                public void onCancelled() {
+                    node.result = null;
+                    resolve(node, false);
                 }
-            }.execute();
-            startInternal(latch);
+            });
+            node.task.execute();
         }
 
-        private void startInternal(final CountDownLatch latch) {
-            for (AsyncTask<?, ?, ?> each : taskList) {
-                each.setFinishedListener(new AsyncTask.FinishedListener() {
+        /**
+         * 任务完成或被跳过，在主线程调用
+         */
+        private void resolve(Node node, boolean succeeded) {
+            node.resolved = true;
+            node.succeeded = succeeded;
+            unresolved--;
+            for (Node dependent : node.dependents) {
+                if (dependent.resolved) continue;
+                if (!succeeded) {
+                    if (Log.isPrint) Log.w(TAG, "skip " + dependent.name + ": " + node.name + " not succeeded");
+                    resolve(dependent, false);
+                } else if (--dependent.waiting == 0) {
+                    launch(dependent);
+                }
+            }
+            // 跳过下游任务时会递归调用，结束动作只执行一次
+            if (unresolved == 0 && !ended) {
+                ended = true;
+                if (endAction != null) endAction.run();
+            }
+        }
+    }
+
+    /**
+     * 关卡的公共部分：成员计数、超时和只执行一次的结束动作。
+     * <p>不占用等待线程：每个任务完成时计数减一，最后一个完成的任务直接触发结束动作；超时由主线程Handler计时。
+     * 成员完成的回调和结束动作都在主线程，结束之后完成的成员不再记录。
+     * <p>设置了{@link #setQuorum(int)}时，成功的任务数达到要求（或已不可能达到）就立即结束，并取消仍在执行的任务。
+     */
+    static abstract class Barrier {
+        ArrayList<AsyncTask<?, ?, ?>> taskList = new ArrayList<AsyncTask<?, ?, ?>>();
+        private transient boolean isRunning = false;
+        private final AtomicInteger remaining = new AtomicInteger();
+        private final AtomicBoolean fired = new AtomicBoolean();
+        private Runnable timeoutAction;
+        /**
+         * 需要成功的任务数，0 表示等待所有任务
+         */
+        private int quorum;
+        /**
+         * 以下只在主线程访问
+         */
+        private int succeeded;
+        private boolean[] finished;
 
+        void setQuorum(int n) {
+            if (isRunning) throw new IllegalStateException("quorum must be set before start");
+            if (n <= 0) throw new IllegalArgumentException("quorum must be > 0");
+            quorum = n;
+        }
+
+        /**
+         * 结束动作，在主线程执行一次
+         */
+        abstract void onEnd();
+
+        /**
+         * 一个成员完成或被取消，在主线程调用
+         *
+         * @param index 成员加入的顺序
+         */
+        void onMemberFinished(int index, AsyncTask<?, ?, ?> task, Object result, boolean cancelled) {}
+
+        /**
+         * @param unit if timeunit is null, wait for all tasks without timeout.
+         */
+        void startBarrier(long time, TimeUnit unit) {
+            if (isRunning) throw new RuntimeException(getClass().getSimpleName() + " only can start once.");
+            if (quorum > taskList.size()) {
+                throw new IllegalArgumentException("quorum " + quorum + " > task count " + taskList.size());
+            }
+            isRunning = true;
+            remaining.set(taskList.size());
+            finished = new boolean[taskList.size()];
+            if (unit != null) {
+                timeoutAction = new Runnable() {
                     @Override
-                    public void onPostExecute() {
-                        latch.countDown();
+                    public void run() {
+                        fire();
                     }
-
+                };
+                AsyncTask.runOnMainThreadDelayed(timeoutAction, unit.toMillis(time));
+            }
+            if (taskList.isEmpty()) {
+                AsyncTask.runOnMainThread(new Runnable() {
                     @Override
-                    public void onCancelled() {
-                        latch.countDown();
+                    public void run() {
+                        fire();
                     }
                 });
+                return;
+            }
+            for (int i = 0; i < taskList.size(); i++) {
+                AsyncTask<?, ?, ?> each = taskList.get(i);
+                each.setFinishedListener(new MemberListener(i, each));
                 each.execute();
             }
         }
 
+        final boolean isFired() {
+            return fired.get();
+        }
+
+        /**
+         * 取消仍在执行的任务，释放它们占用的线程
+         */
+        private void cancelUnfinished() {
+            for (int i = 0; i < taskList.size(); i++) {
+                if (!finished[i]) taskList.get(i).cancel(true);
+            }
+        }
+
+        /**
+         * 在主线程调用，结束动作只执行一次
+         */
+        final void fire() {
+            if (!fired.compareAndSet(false, true)) return;
+            if (timeoutAction != null) AsyncTask.removeFromMainThread(timeoutAction);
+            onEnd();
+        }
+
+        private class MemberListener implements AsyncTask.ResultListener {
+            private final int index;
+            private final AsyncTask<?, ?, ?> task;
+            private Object result;
+
+            MemberListener(int index, AsyncTask<?, ?, ?> task) {
+                this.index = index;
+                this.task = task;
+            }
+
+            @Override
+            public void onResult(Object result) {
+                this.result = result;
+            }
+
+            @Override
+            public void onPostExecute() {
+                onFinished(false);
+            }
+
+            @Override
+            public void onCancelled() {
+                onFinished(true);
+            }
+
+            private void onFinished(boolean cancelled) {
+                finished[index] = true;
+                if (!isFired()) {
+                    onMemberFinished(index, task, result, cancelled);
+                    if (!cancelled && !(task instanceof SafeTask && ((SafeTask<?, ?, ?>) task).getCause() != null)) {
+                        succeeded++;
+                    }
+                }
+                result = null;
+                int left = remaining.decrementAndGet();
+                if (left == 0) {
+                    fire();
+                } else if (quorum > 0 && !isFired() && (succeeded >= quorum || succeeded + left < quorum)) {
+                    fire();
+                    cancelUnfinished();
+                }
+            }
+        }
+    }
+
+    /**
+     * 所有任务完成（或超时）时在主线程执行结束任务。
+     */
+    public static class CyclicBarrierExecutor extends Barrier {
+        private Runnable endAction;
+
+        public CyclicBarrierExecutor put(AsyncTask<?, ?, ?> task) {
+            if (task != null) taskList.add(task);
+            return this;
+        }
+
+        /**
+         * 任意一个任务成功即结束，其余任务被取消
+         */
+        public CyclicBarrierExecutor anyOf() {
+            return quorum(1);
+        }
+
+        /**
+         * n个任务成功即结束，其余任务被取消；失败、取消的任务太多，已不可能达到n个时也立即结束。
+         */
+        public CyclicBarrierExecutor quorum(int n) {
+            setQuorum(n);
+            return this;
+        }
+
+        public void start(final AsyncTask<?, ?, ?> finishTask) {
+            start(finishTask, 0, null);
+        }
+
+        public void start(final AsyncTask<?, ?, ?> endOnUiTask, final long time, final TimeUnit unit) {
+            start(new Runnable() {
+                @Override
+                public void run() {
+                    endOnUiTask.execute();
+                }
+            }, time, unit);
+        }
+
+        public void start(Runnable endOnUiThread) {
+            start(endOnUiThread, 0, null);
+        }
+
+        /**
+         * @param endOnUiThread 所有任务完成或超时时在主线程执行，只执行一次
+         * @param time          超时时间
+         * @param unit          if timeunit is null, wait for all tasks without timeout.
+         */
+        public void start(final Runnable endOnUiThread, final long time, final TimeUnit unit) {
+            endAction = endOnUiThread;
+            startBarrier(time, unit);
+        }
+
+        @Override
+        void onEnd() {
+            endAction.run();
+        }
+    }
+
+    /**
+     * 收集结果的关卡：按加入顺序把每个任务的结果放入{@link Results}，所有任务完成（或超时）时在主线程回调。
+     * <p>结果直接写入按序号分配好的数组，不加锁也不复制：成员完成的回调都在主线程，回调之后不再修改。
+     */
+    public static class ResultBarrierExecutor<Result> extends Barrier {
+        private Callback<Result> callback;
+        private Results<Result> results;
+
+        public interface Callback<Result> {
+            /**
+             * Main UI Thread
+             */
+            void onFinished(Results<Result> results);
+        }
+
+        public ResultBarrierExecutor<Result> put(AsyncTask<?, ?, ? extends Result> task) {
+            if (task != null) taskList.add(task);
+            return this;
+        }
+
+        /**
+         * 任意一个任务成功即结束，其余任务被取消，状态为{@link State#PENDING}
+         */
+        public ResultBarrierExecutor<Result> anyOf() {
+            return quorum(1);
+        }
+
+        /**
+         * n个任务成功即结束，其余任务被取消，状态为{@link State#PENDING}；
+         * 失败、取消的任务太多，已不可能达到n个时也立即结束。
+         */
+        public ResultBarrierExecutor<Result> quorum(int n) {
+            setQuorum(n);
+            return this;
+        }
+
+        public void start(Callback<Result> callback) {
+            start(callback, 0, null);
+        }
+
+        /**
+         * @param callback 所有任务完成或超时时在主线程回调，只回调一次
+         * @param time     超时时间，超时时未完成的成员状态为{@link State#PENDING}
+         * @param unit     if timeunit is null, wait for all tasks without timeout.
+         */
+        public void start(Callback<Result> callback, long time, TimeUnit unit) {
+            this.callback = callback;
+            results = new Results<Result>(taskList.size());
+            startBarrier(time, unit);
+        }
+
+        @Override
+        void onMemberFinished(int index, AsyncTask<?, ?, ?> task, Object result, boolean cancelled) {
+            if (cancelled) {
+                results.states[index] = State.CANCELLED;
+                return;
+            }
+            Exception cause = task instanceof SafeTask ? ((SafeTask<?, ?, ?>) task).getCause() : null;
+            if (cause != null) {
+                results.states[index] = State.FAILED;
+                results.errors[index] = cause;
+            } else {
+                results.states[index] = State.SUCCEEDED;
+                results.values[index] = result;
+            }
+        }
+
+        @Override
+        void onEnd() {
+            callback.onFinished(results);
+        }
+
+        public enum State {
+            /**
+             * 结束时尚未完成：超时，或提前结束时被取消
+             */
+            PENDING,
+            SUCCEEDED,
+            /**
+             * {@link SafeTask#doInBackgroundSafely(Object...)}抛出了异常
+             */
+            FAILED,
+            CANCELLED
+        }
+
+        /**
+         * 按任务加入顺序排列的结果
+         */
+        public static class Results<Result> {
+            private final Object[] values;
+            private final Exception[] errors;
+            private final State[] states;
+
+            Results(int size) {
+                values = new Object[size];
+                errors = new Exception[size];
+                states = new State[size];
+                Arrays.fill(states, State.PENDING);
+            }
+
+            public int size() {
+                return values.length;
+            }
+
+            /**
+             * @return 第index个任务的结果，未成功时返回null
+             */
+            @SuppressWarnings("unchecked")
+            public Result get(int index) {
+                return (Result) values[index];
+            }
+
+            public State getState(int index) {
+                return states[index];
+            }
+
+            /**
+             * @return 第index个任务抛出的异常，状态为{@link State#FAILED}时不为null
+             */
+            public Exception getError(int index) {
+                return errors[index];
+            }
+
+            /**
+             * @return 处于该状态的任务数
+             */
+            public int count(State state) {
+                int count = 0;
+                for (State each : states) {
+                    if (each == state) count++;
+                }
+                return count;
+            }
+
+            public boolean isAllSucceeded() {
+                return count(State.SUCCEEDED) == states.length;
+            }
+
+            @Override
+            public String toString() {
+                return "Results" + Arrays.toString(states);
+            }
+        }
     }
 }
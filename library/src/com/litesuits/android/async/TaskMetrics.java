@@ -0,0 +1,221 @@
+package com.litesuits.android.async;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 异步任务运行统计：提交、开始、完成、取消、被丢弃的任务数，排队时间和执行时间分布，以及队列深度、活跃线程数。
+ * <p>默认关闭，关闭时每个埋点只有一次volatile读，几乎没有开销。
+ * 开启后通过{@link #snapshot()}获取快照，导出到自己的统计系统。
+ * <p>统计对象是{@link AsyncTask}（包括其子类），被丢弃数包含{@link AsyncTask#mLruSerialExecutor}挤出的所有任务。
+ */
+public final class TaskMetrics {
+	private static volatile boolean sEnabled = false;
+
+	private static final AtomicLong sSubmitted = new AtomicLong();
+	private static final AtomicLong sStarted = new AtomicLong();
+	private static final AtomicLong sCompleted = new AtomicLong();
+	private static final AtomicLong sCancelled = new AtomicLong();
+	private static final AtomicLong sDropped = new AtomicLong();
+	private static final Histogram sQueueWait = new Histogram();
+	private static final Histogram sRunTime = new Histogram();
+
+	private TaskMetrics() {}
+
+	public static void setEnabled(boolean enabled) {
+		sEnabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return sEnabled;
+	}
+
+	/**
+	 * 清零所有计数
+	 */
+	public static void reset() {
+		sSubmitted.set(0);
+		sStarted.set(0);
+		sCompleted.set(0);
+		sCancelled.set(0);
+		sDropped.set(0);
+		sQueueWait.reset();
+		sRunTime.reset();
+	}
+
+	/**
+	 * 获取当前统计数据的快照。队列深度和线程数在此时读取，埋点处不做任何查询。
+	 */
+	public static Snapshot snapshot() {
+		ThreadPoolExecutor pool = AsyncTask.mCachedSerialExecutor;
+		return new Snapshot(sSubmitted.get(), sStarted.get(), sCompleted.get(), sCancelled.get(), sDropped.get(),
+				AsyncTask.getLruQueueSize(), pool.getActiveCount(), pool.getPoolSize(), sQueueWait.snapshot(),
+				sRunTime.snapshot());
+	}
+
+	/*********************************** 埋点 *******************************/
+
+	static void onSubmitted() {
+		sSubmitted.incrementAndGet();
+	}
+
+	static void onStarted(long queueWaitNanos) {
+		sStarted.incrementAndGet();
+		if (queueWaitNanos >= 0) sQueueWait.record(queueWaitNanos);
+	}
+
+	static void onRunFinished(long runNanos) {
+		sRunTime.record(runNanos);
+	}
+
+	static void onCompleted() {
+		sCompleted.incrementAndGet();
+	}
+
+	static void onCancelled() {
+		sCancelled.incrementAndGet();
+	}
+
+	static void onDropped() {
+		sDropped.incrementAndGet();
+	}
+
+	/*********************************** 数据 *******************************/
+
+	/**
+	 * 以2的幂为桶（单位微秒）的延迟分布，记录时无锁、不分配内存。
+	 */
+	private static class Histogram {
+		private static final int BUCKETS = 32;
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		void record(long nanos) {
+			long micros = nanos / 1000;
+			int index = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+			buckets.incrementAndGet(index);
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			long max;
+			while (nanos > (max = maxNanos.get())) {
+				if (maxNanos.compareAndSet(max, nanos)) break;
+			}
+		}
+
+		void reset() {
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets.set(i, 0);
+			}
+			count.set(0);
+			totalNanos.set(0);
+			maxNanos.set(0);
+		}
+
+		Latency snapshot() {
+			long[] copy = new long[BUCKETS];
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				copy[i] = buckets.get(i);
+				total += copy[i];
+			}
+			long n = count.get();
+			return new Latency(n, n == 0 ? 0 : totalNanos.get() / n, maxNanos.get(), percentile(copy, total, 0.5),
+					percentile(copy, total, 0.9), percentile(copy, total, 0.99));
+		}
+
+		/**
+		 * @return 该百分位所在桶的上界（纳秒）
+		 */
+		private static long percentile(long[] buckets, long total, double p) {
+			if (total == 0) return 0;
+			long rank = (long) Math.ceil(total * p);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank) return TimeUnit.MICROSECONDS.toNanos(1L << i);
+			}
+			return TimeUnit.MICROSECONDS.toNanos(1L << (buckets.length - 1));
+		}
+	}
+
+	/**
+	 * 延迟分布快照，时间单位为纳秒，百分位为近似值（2的幂桶的上界）。
+	 */
+	public static class Latency {
+		public final long count;
+		public final long meanNanos;
+		public final long maxNanos;
+		public final long p50Nanos;
+		public final long p90Nanos;
+		public final long p99Nanos;
+
+		Latency(long count, long meanNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos) {
+			this.count = count;
+			this.meanNanos = meanNanos;
+			this.maxNanos = maxNanos;
+			this.p50Nanos = p50Nanos;
+			this.p90Nanos = p90Nanos;
+			this.p99Nanos = p99Nanos;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + ", mean=" + meanNanos / 1000 + "us, p50<=" + p50Nanos / 1000 + "us, p90<="
+					+ p90Nanos / 1000 + "us, p99<=" + p99Nanos / 1000 + "us, max=" + maxNanos / 1000 + "us";
+		}
+	}
+
+	public static class Snapshot {
+		public final long submitted;
+		public final long started;
+		public final long completed;
+		public final long cancelled;
+		public final long dropped;
+		/**
+		 * {@link AsyncTask#mLruSerialExecutor}中排队的任务数
+		 */
+		public final int queueDepth;
+		/**
+		 * {@link AsyncTask#mCachedSerialExecutor}中正在执行任务的线程数
+		 */
+		public final int activeThreads;
+		/**
+		 * {@link AsyncTask#mCachedSerialExecutor}中的线程总数
+		 */
+		public final int poolSize;
+		/**
+		 * 从提交到开始执行的时间
+		 */
+		public final Latency queueWait;
+		/**
+		 * {@link AsyncTask#doInBackground(Object[])}的执行时间
+		 */
+		public final Latency runTime;
+
+		Snapshot(long submitted, long started, long completed, long cancelled, long dropped, int queueDepth,
+				int activeThreads, int poolSize, Latency queueWait, Latency runTime) {
+			this.submitted = submitted;
+			this.started = started;
+			this.completed = completed;
+			this.cancelled = cancelled;
+			this.dropped = dropped;
+			this.queueDepth = queueDepth;
+			this.activeThreads = activeThreads;
+			this.poolSize = poolSize;
+			this.queueWait = queueWait;
+			this.runTime = runTime;
+		}
+
+		@Override
+		public String toString() {
+			return "TaskMetrics{submitted=" + submitted + ", started=" + started + ", completed=" + completed
+					+ ", cancelled=" + cancelled + ", dropped=" + dropped + ", queueDepth=" + queueDepth
+					+ ", activeThreads=" + activeThreads + ", poolSize=" + poolSize + ", queueWait[" + queueWait
+					+ "], runTime[" + runTime + "]}";
+		}
+	}
+}
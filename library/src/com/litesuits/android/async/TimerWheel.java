@@ -0,0 +1,356 @@
+package com.litesuits.android.async;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 共享的定时器：所有延时、周期任务由一个线程按哈希时间轮调度，不再每个定时任务一个{@link java.util.Timer}线程。
+ * <ul>
+ * <li>时间轮每格{@link #DEFAULT_TICK_MILLIS}毫秒，共{@link #DEFAULT_WHEEL_SIZE}格，任务记录到期的格数，超出一圈的任务在格中等到对应的一圈；</li>
+ * <li>添加、取消都是O(1)，取消的任务在轮到它所在的格子时移除；</li>
+ * <li>定时线程直接休眠到最近一个任务到期，中间的空格不再按格唤醒；没有待执行的任务时一直休眠；</li>
+ * <li>到期的任务分发到主线程（{@link Dispatch#MAIN}）或线程池（{@link Dispatch#WORKER}）执行，定时线程本身不执行任务。</li>
+ * </ul>
+ * 精度为一格的时间，适合心跳、超时、延时刷新等场景。
+ */
+public class TimerWheel {
+	private static final String TAG = TimerWheel.class.getSimpleName();
+	public static final long DEFAULT_TICK_MILLIS = 10;
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	private static volatile TimerWheel sDefault;
+
+	/**
+	 * 到期任务在哪里执行
+	 */
+	public enum Dispatch {
+		/**
+		 * 主线程
+		 */
+		MAIN,
+		/**
+		 * {@link TaskExecutor#start(Runnable)}的线程池
+		 */
+		WORKER
+	}
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	/**
+	 * 新加入的任务，由定时线程在下一格放入时间轮
+	 */
+	private final ConcurrentLinkedQueue<Handle> incoming = new ConcurrentLinkedQueue<Handle>();
+	/**
+	 * 尚未到期或移除的任务数（包括已取消但还没轮到移除的）
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicBoolean started = new AtomicBoolean();
+	/**
+	 * 时间轮中最早到期的格，没有任务时为Long.MAX_VALUE，只由定时线程访问
+	 */
+	private long nextTick = Long.MAX_VALUE;
+
+	public static TimerWheel getDefault() {
+		if (sDefault == null) {
+			synchronized (TimerWheel.class) {
+				if (sDefault == null) sDefault = new TimerWheel(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+			}
+		}
+		return sDefault;
+	}
+
+	/**
+	 * @param tickMillis 每格的时间，即定时精度
+	 * @param wheelSize  格数，会向上取为2的幂
+	 */
+	public TimerWheel(long tickMillis, int wheelSize) {
+		if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be > 0");
+		if (wheelSize <= 0 || wheelSize > 1 << 30) throw new IllegalArgumentException("wheelSize out of range");
+		int size = 1;
+		while (size < wheelSize) size <<= 1;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		this.wheel = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * 延时执行一次
+	 *
+	 * @param unit if timeunit is null, see delay as millisecond.
+	 */
+	public Handle schedule(Runnable run, long delay, TimeUnit unit, Dispatch dispatch) {
+		return add(new Handle(run, toNanos(delay, unit), 0, false, dispatch));
+	}
+
+	/**
+	 * 按固定频率周期执行：每次的计划时间是上一次计划时间加period，不受执行耗时影响。
+	 * 分发到{@link Dispatch#WORKER}时，执行耗时超过period会与下一次重叠。
+	 *
+	 * @param unit if timeunit is null, see initialDelay and period as millisecond.
+	 */
+	public Handle scheduleAtFixedRate(Runnable run, long initialDelay, long period, TimeUnit unit, Dispatch dispatch) {
+		if (period <= 0) throw new IllegalArgumentException("period must be > 0");
+		return add(new Handle(run, toNanos(initialDelay, unit), toNanos(period, unit), true, dispatch));
+	}
+
+	/**
+	 * 按固定间隔周期执行：上一次执行结束后再等待delay，执行不会重叠。
+	 *
+	 * @param unit if timeunit is null, see initialDelay and delay as millisecond.
+	 */
+	public Handle scheduleWithFixedDelay(Runnable run, long initialDelay, long delay, TimeUnit unit, Dispatch dispatch) {
+		if (delay <= 0) throw new IllegalArgumentException("delay must be > 0");
+		return add(new Handle(run, toNanos(initialDelay, unit), toNanos(delay, unit), false, dispatch));
+	}
+
+	/**
+	 * @return 尚未到期的任务数，包括已取消但尚未从时间轮移除的任务
+	 */
+	public int getPendingCount() {
+		return pending.get();
+	}
+
+	private static long toNanos(long time, TimeUnit unit) {
+		return unit == null ? TimeUnit.MILLISECONDS.toNanos(time) : unit.toNanos(time);
+	}
+
+	private Handle add(Handle handle) {
+		if (handle.run == null) throw new NullPointerException("runnable is null");
+		if (handle.dispatch == null) throw new NullPointerException("dispatch is null");
+		handle.wheel = this;
+		pending.incrementAndGet();
+		enqueue(handle);
+		if (started.compareAndSet(false, true)) {
+			Thread thread = new Thread(TAG) {
+				@Override
+				public void run() {
+					loop();
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return handle;
+	}
+
+	private void enqueue(Handle handle) {
+		incoming.add(handle);
+		synchronized (this) {
+			notify();
+		}
+	}
+
+	/*********************************** 定时线程 *******************************/
+
+	private void loop() {
+		long startTime = System.nanoTime();
+		long tick = 0;
+		while (true) {
+			synchronized (this) {
+				if (pending.get() == 0) {
+					try {
+						while (pending.get() == 0) {
+							wait();
+						}
+					} catch (InterruptedException e) {
+						// 定时线程不响应中断
+					}
+					// 休眠期间没有任务，时间轮从当前时间重新开始
+					startTime = System.nanoTime();
+					tick = 0;
+				}
+				// 休眠到最早到期的格结束，中间的空格不必唤醒；新加入任务时被enqueue()唤醒
+				if (incoming.isEmpty()) {
+					try {
+						if (nextTick == Long.MAX_VALUE) {
+							wait();
+						} else {
+							long sleepNanos = startTime + (nextTick + 1) * tickNanos - System.nanoTime();
+							if (sleepNanos > 0) wait(TimeUnit.NANOSECONDS.toMillis(sleepNanos), (int) (sleepNanos % 1000000));
+						}
+					} catch (InterruptedException e) {
+						// 定时线程不响应中断
+					}
+				}
+			}
+			// 已经结束的最后一格
+			long done = (System.nanoTime() - startTime) / tickNanos - 1;
+			transferIncoming(startTime, tick);
+			if (done < tick) continue;
+			if (nextTick <= done) {
+				// 在最早到期的格之前都是空格；睡过了一圈以上时每格只需访问一次
+				for (long t = Math.max(nextTick, done - mask); t <= done; t++) {
+					expire(wheel[(int) (t & mask)], done);
+				}
+			}
+			tick = done + 1;
+			if (nextTick < tick) nextTick = findNextTick();
+		}
+	}
+
+	private void transferIncoming(long startTime, long tick) {
+		Handle handle;
+		while ((handle = incoming.poll()) != null) {
+			if (handle.isCancelled()) {
+				pending.decrementAndGet();
+				continue;
+			}
+			// 已经过期的放到当前格，本格结束时执行
+			handle.expireTick = Math.max((handle.deadline - startTime) / tickNanos, tick);
+			wheel[(int) (handle.expireTick & mask)].add(handle);
+			if (handle.expireTick < nextTick) nextTick = handle.expireTick;
+		}
+	}
+
+	/**
+	 * 执行格中到期（不晚于done）的任务，移除已取消的任务
+	 */
+	private void expire(Bucket bucket, long done) {
+		long min = Long.MAX_VALUE;
+		Handle handle = bucket.head;
+		while (handle != null) {
+			Handle next = handle.next;
+			if (handle.isCancelled()) {
+				bucket.remove(handle);
+				pending.decrementAndGet();
+			} else if (handle.expireTick <= done) {
+				bucket.remove(handle);
+				handle.fire();
+			} else if (handle.expireTick < min) {
+				min = handle.expireTick;
+			}
+			handle = next;
+		}
+		bucket.minTick = min;
+	}
+
+	private long findNextTick() {
+		long min = Long.MAX_VALUE;
+		for (Bucket bucket : wheel) {
+			if (bucket.minTick < min) min = bucket.minTick;
+		}
+		return min;
+	}
+
+	/**
+	 * 一格中的任务，双向链表，只由定时线程访问
+	 */
+	private static class Bucket {
+		Handle head;
+		Handle tail;
+		/**
+		 * 格中最早到期的格数，包括已取消的任务
+		 */
+		long minTick = Long.MAX_VALUE;
+
+		void add(Handle handle) {
+			if (handle.expireTick < minTick) minTick = handle.expireTick;
+			handle.prev = tail;
+			handle.next = null;
+			if (tail == null) head = handle;
+			else tail.next = handle;
+			tail = handle;
+		}
+
+		void remove(Handle handle) {
+			if (handle.prev == null) head = handle.next;
+			else handle.prev.next = handle.next;
+			if (handle.next == null) tail = handle.prev;
+			else handle.next.prev = handle.prev;
+			handle.prev = null;
+			handle.next = null;
+		}
+	}
+
+	/**
+	 * 一个定时任务，可以取消
+	 */
+	public static final class Handle {
+		private static final int STATE_PENDING = 0;
+		private static final int STATE_DONE = 1;
+		private static final int STATE_CANCELLED = 2;
+		private final Runnable run;
+		/**
+		 * 周期，0 表示只执行一次
+		 */
+		private final long periodNanos;
+		private final boolean fixedRate;
+		private final Dispatch dispatch;
+		private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+		private TimerWheel wheel;
+		private volatile long deadline;
+		/**
+		 * 以下只由定时线程访问
+		 */
+		private long expireTick;
+		private Handle prev;
+		private Handle next;
+
+		private Handle(Runnable run, long delayNanos, long periodNanos, boolean fixedRate, Dispatch dispatch) {
+			this.run = run;
+			this.deadline = System.nanoTime() + Math.max(0, delayNanos);
+			this.periodNanos = periodNanos;
+			this.fixedRate = fixedRate;
+			this.dispatch = dispatch;
+		}
+
+		/**
+		 * 取消尚未执行的任务；周期任务取消后不再执行，正在执行的那一次不受影响。
+		 *
+		 * @return 已经执行完毕（一次性任务）或已经取消时返回false
+		 */
+		public boolean cancel() {
+			return state.compareAndSet(STATE_PENDING, STATE_CANCELLED);
+		}
+
+		public boolean isCancelled() {
+			return state.get() == STATE_CANCELLED;
+		}
+
+		/**
+		 * @return 一次性任务已经分发执行
+		 */
+		public boolean isDone() {
+			return state.get() == STATE_DONE;
+		}
+
+		/**
+		 * 在定时线程中调用
+		 */
+		private void fire() {
+			if (periodNanos == 0) {
+				wheel.pending.decrementAndGet();
+				// 与cancel()竞争，只有一方成功
+				if (state.compareAndSet(STATE_PENDING, STATE_DONE)) dispatch(run);
+			} else if (fixedRate) {
+				deadline += periodNanos;
+				dispatch(run);
+				wheel.enqueue(this);
+			} else {
+				// 固定间隔：执行结束后再重新加入时间轮，期间仍计入待执行数
+				dispatch(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							Handle.this.run.run();
+						} finally {
+							deadline = System.nanoTime() + periodNanos;
+							wheel.enqueue(Handle.this);
+						}
+					}
+				});
+			}
+		}
+
+		private void dispatch(Runnable runnable) {
+			if (dispatch == Dispatch.MAIN) AsyncTask.runOnMainThread(runnable);
+			else TaskExecutor.start(runnable);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package com.litesuits.android.async;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作窃取执行器，适合图片解码、JSON解析这类CPU密集且粒度很小的任务。
+ * <p>每个工作线程有自己的双端队列：在工作线程内提交（fork）的子任务放入本线程队列，自己按LIFO取，
+ * 空闲的线程从别人队列的另一端窃取，避免所有任务争抢同一个共享队列。
+ * <p>ForkJoinPool在Android 5.0（API 21）才可用，这里是一个兼容低版本的精简实现。
+ * <p>用法：
+ * <ul>
+ * <li>单个任务：{@link AsyncTask#executeOnExecutor(Executor, Object[])}传入{@link #getDefault()}；</li>
+ * <li>全局：{@link AsyncTask#setDefaultExecutor(Executor)}；</li>
+ * <li>在{@link AsyncTask#doInBackground(Object[])}里拆分子任务：{@link #fork(Callable)}，再{@link #join(Future)}。</li>
+ * </ul>
+ */
+public class WorkStealingExecutor implements Executor {
+	private static final String TAG = WorkStealingExecutor.class.getSimpleName();
+	private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+	/**
+	 * 唤醒一个阻塞中的空闲线程，让它去窃取任务
+	 */
+	private static final Runnable WAKE_UP = new Runnable() {
+		@Override
+		public void run() {}
+	};
+	private static volatile WorkStealingExecutor sDefault;
+
+	private final Worker[] mWorkers;
+	private final LinkedBlockingQueue<Runnable> mSubmissionQueue = new LinkedBlockingQueue<Runnable>();
+	private final AtomicInteger mIdleCount = new AtomicInteger();
+	private volatile boolean mShutdown;
+
+	/**
+	 * 进程内共享的实例，线程数为cpu个数，首次调用时才创建线程。
+	 */
+	public static WorkStealingExecutor getDefault() {
+		if (sDefault == null) {
+			synchronized (WorkStealingExecutor.class) {
+				if (sDefault == null) sDefault = new WorkStealingExecutor(CPU_COUNT);
+			}
+		}
+		return sDefault;
+	}
+
+	/**
+	 * @param parallelism 工作线程数
+	 */
+	public WorkStealingExecutor(int parallelism) {
+		if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be > 0");
+		mWorkers = new Worker[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			mWorkers[i] = new Worker(i);
+		}
+		for (Worker w : mWorkers) {
+			w.start();
+		}
+	}
+
+	/**
+	 * 在本执行器的工作线程内调用时，任务放入当前线程的队列；否则放入共享提交队列。
+	 */
+	@Override
+	public void execute(Runnable command) {
+		if (command == null) throw new NullPointerException("command == null");
+		if (mShutdown) throw new RejectedExecutionException("WorkStealingExecutor has been shut down.");
+		Worker worker = currentWorker();
+		if (worker != null) {
+			worker.push(command);
+			// 有线程在阻塞等待时唤醒一个来窃取
+			if (mIdleCount.get() > 0) mSubmissionQueue.offer(WAKE_UP);
+		} else {
+			mSubmissionQueue.offer(command);
+		}
+	}
+
+	/**
+	 * 拆分出一个子任务并异步执行，在工作线程内调用时子任务进入本线程队列。
+	 */
+	public <T> Future<T> fork(Callable<T> callable) {
+		FutureTask<T> future = new FutureTask<T>(callable);
+		execute(future);
+		return future;
+	}
+
+	/**
+	 * 等待子任务完成并返回结果。在工作线程内调用时，等待期间会帮忙执行队列里的其他任务，而不是干等。
+	 */
+	public <T> T join(Future<T> future) throws InterruptedException, ExecutionException {
+		Worker worker = currentWorker();
+		if (worker != null) {
+			while (!future.isDone()) {
+				Runnable r = worker.pop();
+				if (r == null) r = steal(worker.index);
+				if (r == null) break;
+				runSafely(r);
+			}
+		}
+		return future.get();
+	}
+
+	/**
+	 * 不再接收新任务，已提交的任务执行完后工作线程退出。
+	 */
+	public void shutdown() {
+		mShutdown = true;
+		for (int i = 0; i < mWorkers.length; i++) {
+			mSubmissionQueue.offer(WAKE_UP);
+		}
+	}
+
+	private Worker currentWorker() {
+		Thread t = Thread.currentThread();
+		if (t instanceof Worker && ((Worker) t).getExecutor() == this) return (Worker) t;
+		return null;
+	}
+
+	private Runnable steal(int thief) {
+		int n = mWorkers.length;
+		for (int i = 1; i < n; i++) {
+			Runnable r = mWorkers[(thief + i) % n].steal();
+			if (r != null) return r;
+		}
+		return null;
+	}
+
+	private static void runSafely(Runnable r) {
+		try {
+			r.run();
+		} catch (Throwable t) {
+			Log.e(TAG, "task run error: " + r, t);
+		}
+	}
+
+	private class Worker extends Thread {
+		final int index;
+		/**
+		 * 本线程的任务队列：自己从队尾取，窃取者从队头取
+		 */
+		private final ArrayDequeCompat<Runnable> deque = new ArrayDequeCompat<Runnable>();
+
+		Worker(int index) {
+			super("WorkStealing #" + (index + 1));
+			this.index = index;
+		}
+
+		WorkStealingExecutor getExecutor() {
+			return WorkStealingExecutor.this;
+		}
+
+		void push(Runnable r) {
+			synchronized (deque) {
+				deque.offerLast(r);
+			}
+		}
+
+		Runnable pop() {
+			synchronized (deque) {
+				return deque.pollLast();
+			}
+		}
+
+		Runnable steal() {
+			synchronized (deque) {
+				return deque.pollFirst();
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Runnable r = pop();
+				if (r == null) r = mSubmissionQueue.poll();
+				if (r == null) r = WorkStealingExecutor.this.steal(index);
+				if (r == null) {
+					if (mShutdown) return;
+					mIdleCount.incrementAndGet();
+					try {
+						// 登记空闲后再窃取一次，避免与execute()中的唤醒检查错过
+						r = WorkStealingExecutor.this.steal(index);
+						if (r == null) r = mSubmissionQueue.take();
+					} catch (InterruptedException e) {
+						if (mShutdown) return;
+					} finally {
+						mIdleCount.decrementAndGet();
+					}
+				}
+				if (r != null && r != WAKE_UP) runSafely(r);
+			}
+		}
+	}
+}